@@ -0,0 +1,275 @@
+package com.bugsnag;
+
+import com.bugsnag.delivery.Delivery;
+import com.bugsnag.delivery.ForwardingHttpDelivery;
+import com.bugsnag.serialization.SerializationException;
+import com.bugsnag.serialization.Serializer;
+import com.bugsnag.util.IdleExecutors;
+import com.bugsnag.util.PooledByteArrayOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Delivers error reports in batches, merging reports for the same API key into a single
+ * notification which is sent once it reaches a maximum number of events or size, or has been
+ * waiting for the linger time. Anything other than an error report, such as a session
+ * payload, is passed straight to the base delivery.
+ *
+ * <p>The size of each report is estimated when it is added to a batch, without serializing it,
+ * and a batch is sent before a report would take it over the maximum size.
+ *
+ * <p>Batches are serialized on a background thread and passed to the base delivery already
+ * serialized, so the base delivery would typically be an {@link
+ * com.bugsnag.delivery.AsyncHttpDelivery}.
+ */
+public class BatchingDelivery extends ForwardingHttpDelivery {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BatchingDelivery.class);
+    private static final int SHUTDOWN_TIMEOUT_MS = 5000;
+
+    // Rough serialized sizes, on the high side, for estimating the size of a report
+    private static final int REPORT_BYTES = 1024;
+    private static final int FRAME_BYTES = 64;
+    private static final int VALUE_BYTES = 16;
+
+    public static final int DEFAULT_MAX_EVENTS = 100;
+    public static final int DEFAULT_MAX_BATCH_BYTES = 1000000;
+    public static final int DEFAULT_LINGER_MS = 1000;
+
+    private final Map<String, Batch> batches = new HashMap<String, Batch>();
+
+    private volatile int maxEvents = DEFAULT_MAX_EVENTS;
+    private volatile int maxBatchBytes = DEFAULT_MAX_BATCH_BYTES;
+    private volatile int lingerMs = DEFAULT_LINGER_MS;
+    private volatile boolean shuttingDown = false;
+
+    private final ScheduledThreadPoolExecutor flushExecutor =
+            IdleExecutors.newScheduledExecutor("bugsnag-batch-delivery-", SHUTDOWN_TIMEOUT_MS);
+
+    /**
+     * Creates a new instance, which sends batches using the given delivery
+     *
+     * @param baseDelivery the delivery to send batches with
+     */
+    public BatchingDelivery(Delivery baseDelivery) {
+        super(baseDelivery);
+
+        // Batches waiting for their linger time are sent directly on close
+        flushExecutor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    /**
+     * Set the maximum number of events in a batch.
+     *
+     * @param maxEvents the maximum number of events to send in one request
+     */
+    public void setMaxEvents(int maxEvents) {
+        if (maxEvents <= 0) {
+            throw new IllegalArgumentException("Max events must be greater than zero");
+        }
+        this.maxEvents = maxEvents;
+    }
+
+    /**
+     * Set the maximum serialized size of a batch. A batch is sent once adding another report
+     * would take its estimated size over this, and a batch which still exceeds it once
+     * serialized is split into smaller requests. A single report larger than this is still
+     * sent on its own.
+     *
+     * @param maxBatchBytes the maximum size of a request body (in bytes)
+     */
+    public void setMaxBatchBytes(int maxBatchBytes) {
+        this.maxBatchBytes = maxBatchBytes;
+    }
+
+    /**
+     * Set how long a report can wait for other reports to join its batch before being sent.
+     *
+     * @param lingerMs the maximum time to wait before sending a batch (in ms)
+     */
+    public void setLingerMs(int lingerMs) {
+        this.lingerMs = lingerMs;
+    }
+
+    @Override
+    public void deliver(Serializer serializer, Object object, Map<String, String> headers) {
+        if (!(object instanceof Notification)) {
+            baseDelivery.deliver(serializer, object, headers);
+            return;
+        }
+
+        Notification notification = (Notification) object;
+        String apiKey = notification.getApiKey();
+        long bytes = 0;
+        for (Report report : notification.getEvents()) {
+            bytes += estimateSize(report);
+        }
+
+        synchronized (batches) {
+            if (!shuttingDown) {
+                Batch batch = batches.get(apiKey);
+                if (batch != null && batch.bytes + bytes > maxBatchBytes) {
+                    batches.remove(apiKey);
+                    scheduleFlush(batch);
+                    batch = null;
+                }
+                if (batch == null) {
+                    batch = new Batch(notification.getConfig(), serializer);
+                    batches.put(apiKey, batch);
+                    scheduleLingerFlush(apiKey, batch);
+                }
+                batch.reports.addAll(notification.getEvents());
+                batch.bytes += bytes;
+                batch.headers = headers;
+
+                if (batch.reports.size() >= maxEvents) {
+                    batches.remove(apiKey);
+                    scheduleFlush(batch);
+                }
+                return;
+            }
+        }
+        baseDelivery.deliver(serializer, object, headers);
+    }
+
+    // Serialize and send full batches on the flushing thread rather than the caller's
+    private void scheduleFlush(final Batch batch) {
+        flushExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                deliverBatch(batch);
+            }
+        });
+    }
+
+    private void scheduleLingerFlush(final String apiKey, final Batch batch) {
+        flushExecutor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (batches) {
+                    // The batch may already have been sent because it became full
+                    if (batches.get(apiKey) != batch) {
+                        return;
+                    }
+                    batches.remove(apiKey);
+                }
+                deliverBatch(batch);
+            }
+        }, lingerMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void deliverBatch(Batch batch) {
+        deliverReports(batch, batch.reports);
+    }
+
+    /**
+     * Estimates the serialized size of a report from its exceptions and meta data.
+     */
+    static long estimateSize(Report report) {
+        long bytes = REPORT_BYTES;
+        Throwable throwable = report.getException();
+        while (throwable != null) {
+            bytes += length(throwable.getClass().getName()) + length(throwable.getMessage());
+            for (StackTraceElement element : throwable.getStackTrace()) {
+                bytes += FRAME_BYTES + length(element.getClassName())
+                        + length(element.getMethodName()) + length(element.getFileName());
+            }
+            throwable = throwable.getCause();
+        }
+        return bytes + estimateSize(report.getMetaData());
+    }
+
+    private static long estimateSize(Object value) {
+        long bytes = VALUE_BYTES;
+        if (value instanceof CharSequence) {
+            bytes += ((CharSequence) value).length();
+        } else if (value instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                bytes += estimateSize(entry.getKey()) + estimateSize(entry.getValue());
+            }
+        } else if (value instanceof Collection) {
+            for (Object element : (Collection<?>) value) {
+                bytes += estimateSize(element);
+            }
+        }
+        return bytes;
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+
+    // A safety net for batches which are larger than their estimated size
+    private void deliverReports(Batch batch, List<Report> reports) {
+        PooledByteArrayOutputStream outputStream = PooledByteArrayOutputStream.acquire();
+        byte[] payload;
+        try {
+            Notification notification = new Notification(batch.config, reports);
+            if (reports.size() > 1) {
+                // Split a batch which is too large rather than trimming its reports
+                notification.setMaxBytes(0);
+            }
+            batch.serializer.writeToStream(outputStream, notification);
+            boolean fits = outputStream.size() <= maxBatchBytes || reports.size() == 1;
+            payload = fits ? outputStream.toByteArray() : null;
+        } catch (SerializationException ex) {
+            LOGGER.warn("Error not reported to Bugsnag - exception when serializing payload", ex);
+            return;
+        } finally {
+            outputStream.release();
+        }
+
+        if (payload == null) {
+            int mid = reports.size() / 2;
+            deliverReports(batch, reports.subList(0, mid));
+            deliverReports(batch, reports.subList(mid, reports.size()));
+            return;
+        }
+        baseDelivery.deliver(batch.serializer, payload, batch.headers);
+    }
+
+    @Override
+    public void close() {
+        List<Batch> pending;
+        synchronized (batches) {
+            shuttingDown = true;
+            pending = new ArrayList<Batch>(batches.values());
+            batches.clear();
+        }
+        flushExecutor.shutdown();
+
+        try {
+            if (!flushExecutor.awaitTermination(SHUTDOWN_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                LOGGER.warn("Shutdown of batch flushing thread took too long");
+            }
+        } catch (InterruptedException ex) {
+            LOGGER.warn("Shutdown of batch flushing thread was interrupted");
+        }
+
+        for (Batch batch : pending) {
+            deliverBatch(batch);
+        }
+        baseDelivery.close();
+    }
+
+    private static class Batch {
+        private final Configuration config;
+        private final Serializer serializer;
+        private final List<Report> reports = new ArrayList<Report>();
+        private long bytes;
+        private Map<String, String> headers;
+
+        Batch(Configuration config, Serializer serializer) {
+            this.config = config;
+            this.serializer = serializer;
+        }
+    }
+}
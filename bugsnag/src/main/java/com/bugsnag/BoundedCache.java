@@ -0,0 +1,69 @@
+package com.bugsnag;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Caches values up to a maximum number of entries, keeping roughly the most recently used.
+ * Entries are added to a current generation, which replaces the previous generation once it
+ * is full. Entries found in the previous generation are copied to the current one, so only
+ * entries which haven't been used for a whole generation are discarded. Additions are counted
+ * as they are made, rather than by asking the map for its size.
+ */
+class BoundedCache<K, V> {
+    private final int generationSize;
+    private final AtomicInteger added = new AtomicInteger();
+    private volatile ConcurrentMap<K, V> current = new ConcurrentHashMap<K, V>();
+    private volatile ConcurrentMap<K, V> previous = new ConcurrentHashMap<K, V>();
+
+    /**
+     * @param maxSize the maximum number of entries to hold
+     */
+    BoundedCache(int maxSize) {
+        this.generationSize = Math.max(1, maxSize / 2);
+    }
+
+    /**
+     * @return the cached value, or null if there isn't one
+     */
+    V get(K key) {
+        V value = current.get(key);
+        if (value == null) {
+            value = previous.get(key);
+            if (value != null) {
+                put(key, value);
+            }
+        }
+        return value;
+    }
+
+    void put(K key, V value) {
+        ConcurrentMap<K, V> generation = current;
+        if (generation.put(key, value) == null && added.incrementAndGet() >= generationSize) {
+            rotate(generation);
+        }
+    }
+
+    /**
+     * @return the value already cached in the current generation, or null if the value was
+     *         added
+     */
+    V putIfAbsent(K key, V value) {
+        ConcurrentMap<K, V> generation = current;
+        V existing = generation.putIfAbsent(key, value);
+        if (existing == null && added.incrementAndGet() >= generationSize) {
+            rotate(generation);
+        }
+        return existing;
+    }
+
+    private synchronized void rotate(ConcurrentMap<K, V> full) {
+        // Another thread may have rotated the generations already
+        if (current == full) {
+            previous = full;
+            current = new ConcurrentHashMap<K, V>();
+            added.set(0);
+        }
+    }
+}
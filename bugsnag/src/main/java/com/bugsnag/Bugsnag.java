@@ -1,8 +1,12 @@
 package com.bugsnag;
 
 import com.bugsnag.callbacks.Callback;
+import com.bugsnag.delivery.Compression;
+import com.bugsnag.delivery.ConfigurableHttpDelivery;
 import com.bugsnag.delivery.Delivery;
 import com.bugsnag.delivery.HttpDelivery;
+import com.bugsnag.serialization.Serializer;
+import com.bugsnag.util.VirtualThreads;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -27,11 +31,12 @@ public class Bugsnag implements Closeable {
     private static final int SHUTDOWN_TIMEOUT_MS = 5000;
     private static final int SESSION_TRACKING_PERIOD_MS = 60000;
     private static final int CORE_POOL_SIZE = 1;
+    static final String RATE_LIMIT_TAB = "rateLimit";
 
     private final ThreadFactory sessionThreadFactory = new ThreadFactory() {
         @Override
         public Thread newThread(Runnable runnable) {
-            Thread thread = Executors.defaultThreadFactory().newThread(runnable);
+            Thread thread = newSessionThread(runnable);
             thread.setName("bugsnag-sessions-" + thread.getId());
             return thread;
         }
@@ -44,15 +49,8 @@ public class Bugsnag implements Closeable {
                     new LinkedBlockingQueue<Runnable>(),
                     sessionThreadFactory);
 
-    private ScheduledThreadPoolExecutor sessionExecutorService =
-            new ScheduledThreadPoolExecutor(CORE_POOL_SIZE,
-                    Executors.defaultThreadFactory(),
-                    new RejectedExecutionHandler() {
-                @Override
-                public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
-                    LOGGER.error("Rejected execution for sessionExecutorService");
-                }
-            });
+    private volatile ScheduledThreadPoolExecutor sessionExecutorService =
+            createSessionExecutorService();
 
     private Configuration config;
     private final SessionTracker sessionTracker;
@@ -100,6 +98,30 @@ public class Bugsnag implements Closeable {
         scheduleSessionFlushes();
     }
 
+    private ScheduledThreadPoolExecutor createSessionExecutorService() {
+        return new ScheduledThreadPoolExecutor(CORE_POOL_SIZE,
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        return newSessionThread(runnable);
+                    }
+                },
+                new RejectedExecutionHandler() {
+                    @Override
+                    public void rejectedExecution(Runnable runnable,
+                                                  ThreadPoolExecutor executor) {
+                        LOGGER.error("Rejected execution for sessionExecutorService");
+                    }
+                });
+    }
+
+    private Thread newSessionThread(Runnable runnable) {
+        if (config != null && config.shouldUseVirtualThreads()) {
+            return VirtualThreads.newThread(runnable);
+        }
+        return Executors.defaultThreadFactory().newThread(runnable);
+    }
+
     private void scheduleSessionFlushes() {
         sessionExecutorService.scheduleAtFixedRate(new Runnable() {
             @Override
@@ -211,6 +233,22 @@ public class Bugsnag implements Closeable {
         config.sessionDelivery = delivery;
     }
 
+    /**
+     * Set the serializer for error reports and sessions. By default payloads are serialized
+     * as JSON, but a serializer for a binary format can be used with an endpoint that accepts
+     * it, such as a self-hosted ingestion service. The content type of each request is taken
+     * from the serializer.
+     *
+     * @param serializer the serializer to use
+     * @see Serializer#Serializer(com.fasterxml.jackson.core.JsonFactory, String)
+     */
+    public void setSerializer(Serializer serializer) {
+        if (serializer == null) {
+            throw new IllegalArgumentException("Serializer must not be null");
+        }
+        config.serializer = serializer;
+    }
+
     /**
      * Set the endpoint to deliver Bugsnag errors report to. This is a convenient
      * shorthand for bugsnag.getDelivery().setEndpoint();
@@ -233,21 +271,50 @@ public class Bugsnag implements Closeable {
      * Any keys in metaData which contain these strings will be marked as
      * [FILTERED] when send to Bugsnag.
      *
+     * <p>Filters starting with "regex:" are regular expressions, and filters starting
+     * with "glob:" are patterns which must match the whole key, such as "glob:*_token".
+     * The filters are compiled once here and shared by every report.
+     *
      * @param filters a list of String keys to filter from metaData
+     * @throws java.util.regex.PatternSyntaxException if a regular expression is invalid
      */
     public void setFilters(String... filters) {
-        config.filters = filters;
+        config.setFilters(filters);
     }
 
     /**
      * Set which exception classes should be ignored (not sent) by Bugsnag.
      *
      * @param ignoreClasses a list of exception classes to ignore
+     * @see #setIgnoreSubclasses(boolean)
+     * @see #setIgnoreCauses(boolean)
      */
     public void setIgnoreClasses(String... ignoreClasses) {
         config.ignoreClasses = ignoreClasses;
     }
 
+    /**
+     * Set whether subclasses of the ignored exception classes are ignored too. By default
+     * only exceptions of exactly those classes are ignored.
+     *
+     * @param ignoreSubclasses whether to ignore subclasses of the ignored classes
+     * @see #setIgnoreClasses(String...)
+     */
+    public void setIgnoreSubclasses(boolean ignoreSubclasses) {
+        config.ignoreSubclasses = ignoreSubclasses;
+    }
+
+    /**
+     * Set whether exceptions are ignored when any exception in their cause chain is of an
+     * ignored class. By default only the exception itself is checked.
+     *
+     * @param ignoreCauses whether to check the causes of exceptions against the ignored classes
+     * @see #setIgnoreClasses(String...)
+     */
+    public void setIgnoreCauses(boolean ignoreCauses) {
+        config.ignoreCauses = ignoreCauses;
+    }
+
     /**
      * Set for which releaseStages errors should be sent to Bugsnag.
      * Use this to stop errors from development builds being sent.
@@ -298,7 +365,7 @@ public class Bugsnag implements Closeable {
      * Set whether Bugsnag should capture and report thread-state for all
      * running threads. This is often not useful for Java web apps, since
      * there could be thousands of active threads depending on your
-     * environment.
+     * environment. Use {@link #setThreadCapturePolicy} to capture fewer threads.
      *
      * @param sendThreads should we send thread state with error reports
      * @see #setNotifyReleaseStages
@@ -307,6 +374,128 @@ public class Bugsnag implements Closeable {
         config.sendThreads = sendThreads;
     }
 
+    /**
+     * Set which threads are captured, and how much of their stacks, when sending
+     * thread-state with error reports. Capturing fewer threads with shorter stacks
+     * reduces the time taken to capture them and the size of each report.
+     *
+     * @param threadCapturePolicy the threads to capture
+     * @see #setSendThreads(boolean)
+     */
+    public void setThreadCapturePolicy(ThreadCapturePolicy threadCapturePolicy) {
+        if (threadCapturePolicy == null) {
+            throw new IllegalArgumentException("Thread capture policy must not be null");
+        }
+        config.threadCapturePolicy = threadCapturePolicy;
+    }
+
+    /**
+     * Set the maximum size (in bytes) of a serialized error report, before compression. A
+     * report which is larger is trimmed until it fits, by leaving out thread stacktraces, then
+     * truncating long metadata strings, then leaving out all but the first 100 stackframes of
+     * each exception. What was trimmed is recorded in the "payloadTrimming" metadata tab.
+     *
+     * <p>Reports are normally streamed to the delivery as they are serialized. When a maximum
+     * size is set, each report is serialized to a buffer first so that it can be trimmed, and
+     * is serialized again for each level of trimming it needs. Defaults to 0.
+     *
+     * @param maxPayloadBytes the maximum payload size, or 0 to never trim reports
+     */
+    public void setMaxPayloadBytes(int maxPayloadBytes) {
+        if (maxPayloadBytes < 0) {
+            throw new IllegalArgumentException("Max payload bytes must not be negative");
+        }
+        config.maxPayloadBytes = maxPayloadBytes;
+    }
+
+    /**
+     * Set the maximum number of error reports to send per second. Reports over the limit are
+     * dropped before they are built, and the number dropped is added to the next report which
+     * is sent. Short bursts of up to a second's worth of reports are allowed.
+     *
+     * @param reportsPerSecond the maximum rate of reports, or 0 for no limit
+     */
+    public void setRateLimit(int reportsPerSecond) {
+        checkRateLimit(reportsPerSecond);
+        config.rateLimiter.setGlobalRate(reportsPerSecond);
+    }
+
+    /**
+     * Set the maximum number of error reports to send per second for each error class.
+     *
+     * @param reportsPerSecond the maximum rate of reports of a class, or 0 for no limit
+     * @see #setRateLimit(int)
+     */
+    public void setErrorClassRateLimit(int reportsPerSecond) {
+        checkRateLimit(reportsPerSecond);
+        config.rateLimiter.setErrorClassRate(reportsPerSecond);
+    }
+
+    /**
+     * Set the maximum number of error reports to send per second for each context. As the
+     * context can be set by callbacks, this limit is checked after the report has been built.
+     *
+     * @param reportsPerSecond the maximum rate of reports with a context, or 0 for no limit
+     * @see #setRateLimit(int)
+     */
+    public void setContextRateLimit(int reportsPerSecond) {
+        checkRateLimit(reportsPerSecond);
+        config.rateLimiter.setContextRate(reportsPerSecond);
+    }
+
+    private void checkRateLimit(int reportsPerSecond) {
+        if (reportsPerSecond < 0) {
+            throw new IllegalArgumentException("Rate limit must not be negative");
+        }
+    }
+
+    /**
+     * Set the fraction of handled error reports of a severity to send. Reports are sampled
+     * by a hash of their error class and top stackframe, so the same error is always kept or
+     * always dropped. The sample rate is sent with each report which is kept, in the
+     * "sampling" tab. Unhandled errors are never sampled.
+     *
+     * @param severity   the severity of reports to sample
+     * @param sampleRate the fraction of reports to send, between 0 and 1
+     */
+    public void setSampleRate(Severity severity, double sampleRate) {
+        checkSampleRate(sampleRate);
+        config.sampler.setSeverityRate(severity, sampleRate);
+    }
+
+    /**
+     * Set the fraction of handled error reports of an error class to send. This takes
+     * precedence over sample rates for loggers and severities.
+     *
+     * @param errorClass the fully-qualified class name of errors to sample
+     * @param sampleRate the fraction of reports to send, between 0 and 1
+     * @see #setSampleRate(Severity, double)
+     */
+    public void setErrorClassSampleRate(String errorClass, double sampleRate) {
+        checkSampleRate(sampleRate);
+        config.sampler.setErrorClassRate(errorClass, sampleRate);
+    }
+
+    /**
+     * Set the fraction of handled error reports logged through the {@link BugsnagAppender} by
+     * a logger, or any of its descendants, to send. This takes precedence over sample rates
+     * for severities.
+     *
+     * @param loggerName the name of the logger, such as "com.example"
+     * @param sampleRate the fraction of reports to send, between 0 and 1
+     * @see #setSampleRate(Severity, double)
+     */
+    public void setLoggerSampleRate(String loggerName, double sampleRate) {
+        checkSampleRate(sampleRate);
+        config.sampler.setLoggerRate(loggerName, sampleRate);
+    }
+
+    private void checkSampleRate(double sampleRate) {
+        if (!(sampleRate >= 0 && sampleRate <= 1)) {
+            throw new IllegalArgumentException("Sample rate must be between 0 and 1");
+        }
+    }
+
     /**
      * Set a timeout (in ms) to use when delivering Bugsnag error reports and sessions.
      * This is a convenient shorthand for bugsnag.getDelivery().setTimeout();
@@ -323,6 +512,84 @@ public class Bugsnag implements Closeable {
         }
     }
 
+    /**
+     * Set the read timeout when delivering Bugsnag error reports and sessions.
+     * This is a convenient shorthand for bugsnag.getDelivery().setReadTimeout();
+     *
+     * @param readTimeout the time to wait for a response once connected (in ms)
+     * @see #setDelivery
+     */
+    public void setReadTimeout(int readTimeout) {
+        if (config.delivery instanceof ConfigurableHttpDelivery) {
+            ((ConfigurableHttpDelivery) config.delivery).setReadTimeout(readTimeout);
+        }
+        if (config.sessionDelivery instanceof ConfigurableHttpDelivery) {
+            ((ConfigurableHttpDelivery) config.sessionDelivery).setReadTimeout(readTimeout);
+        }
+    }
+
+    /**
+     * Set the deadline for each request when delivering Bugsnag error reports and sessions,
+     * after which the request is aborted. This is a convenient shorthand for
+     * bugsnag.getDelivery().setDeadline();
+     *
+     * @param deadline the maximum total time for a request (in ms), or 0 for no deadline
+     * @see #setDelivery
+     */
+    public void setDeadline(int deadline) {
+        if (config.delivery instanceof ConfigurableHttpDelivery) {
+            ((ConfigurableHttpDelivery) config.delivery).setDeadline(deadline);
+        }
+        if (config.sessionDelivery instanceof ConfigurableHttpDelivery) {
+            ((ConfigurableHttpDelivery) config.sessionDelivery).setDeadline(deadline);
+        }
+    }
+
+    /**
+     * Set whether error reports and sessions are delivered, and sessions are flushed, on
+     * virtual threads. Virtual threads are only used when running on Java 21 or later, and
+     * platform threads are used otherwise.
+     *
+     * <p>This applies to the default delivery, so if you are setting a custom
+     * {@link Delivery}, this method should be called after the custom implementation has been
+     * set.
+     *
+     * @param useVirtualThreads true to use virtual threads
+     * @see #setDelivery
+     */
+    public void setUseVirtualThreads(boolean useVirtualThreads) {
+        if (useVirtualThreads && !VirtualThreads.isSupported()) {
+            LOGGER.warn("Virtual threads require Java 21 or later, using platform threads");
+        }
+        boolean wasUsingVirtualThreads = config.shouldUseVirtualThreads();
+        config.setUseVirtualThreads(useVirtualThreads);
+        if (config.shouldUseVirtualThreads() == wasUsingVirtualThreads) {
+            return;
+        }
+
+        // Replace the session thread, which is already running. Shutting down the previous
+        // thread cancels its periodic flushes, but lets a flush which has started finish.
+        ScheduledThreadPoolExecutor previous = sessionExecutorService;
+        sessionExecutorService = createSessionExecutorService();
+        previous.shutdown();
+        scheduleSessionFlushes();
+    }
+
+    /**
+     * Set the compression to use for request bodies when delivering Bugsnag error reports and
+     * sessions. This is a convenient shorthand for bugsnag.getDelivery().setCompression();
+     *
+     * @param compression the encoding to compress requests with
+     * @see #setDelivery
+     */
+    public void setCompression(Compression compression) {
+        if (config.delivery instanceof ConfigurableHttpDelivery) {
+            ((ConfigurableHttpDelivery) config.delivery).setCompression(compression);
+        }
+        if (config.sessionDelivery instanceof ConfigurableHttpDelivery) {
+            ((ConfigurableHttpDelivery) config.sessionDelivery).setCompression(compression);
+        }
+    }
 
     //
     // Notification
@@ -347,7 +614,7 @@ public class Bugsnag implements Closeable {
      * @return true unless the error report was ignored
      */
     public boolean notify(Throwable throwable) {
-        return notify(buildReport(throwable));
+        return notify(throwable, (Callback) null);
     }
 
     /**
@@ -358,7 +625,13 @@ public class Bugsnag implements Closeable {
      * @return true unless the error report was ignored
      */
     public boolean notify(Throwable throwable, Callback callback) {
-        return notify(buildReport(throwable), callback);
+        double sampleRate = getSampleRate(throwable, null, null);
+        if (!admit(throwable, sampleRate)) {
+            return false;
+        }
+        Report report = buildReport(throwable);
+        report.setSampleRate(sampleRate);
+        return notify(report, callback, true);
     }
 
     /**
@@ -383,15 +656,29 @@ public class Bugsnag implements Closeable {
      * @return true unless the error report was ignored
      */
     public boolean notify(Throwable throwable, Severity severity, Callback callback) {
+        return notify(throwable, severity, callback, null);
+    }
+
+    /**
+     * Notify Bugsnag of a handled exception logged by a logger, so that the sample rate for
+     * the logger applies.
+     */
+    boolean notify(Throwable throwable, Severity severity, Callback callback, String loggerName) {
         if (throwable == null) {
             LOGGER.warn("Tried to notify with a null Throwable");
             return false;
         }
 
+        double sampleRate = getSampleRate(throwable, severity, loggerName);
+        if (!admit(throwable, sampleRate)) {
+            return false;
+        }
+
         HandledState handledState = HandledState.newInstance(
                 HandledState.SeverityReasonType.REASON_USER_SPECIFIED, severity);
         Report report = new Report(config, throwable, handledState, Thread.currentThread());
-        return notify(report, callback);
+        report.setSampleRate(sampleRate);
+        return notify(report, callback, true);
     }
 
     /**
@@ -409,8 +696,15 @@ public class Bugsnag implements Closeable {
 
 
     boolean notify(Throwable throwable, HandledState handledState, Thread currentThread) {
+        // Unhandled errors are never sampled
+        double sampleRate = handledState.isUnhandled()
+                ? Double.NaN : getSampleRate(throwable, null, null);
+        if (!admit(throwable, sampleRate)) {
+            return false;
+        }
         Report report = new Report(config, throwable, handledState, currentThread);
-        return notify(report, null);
+        report.setSampleRate(sampleRate);
+        return notify(report, null, true);
     }
 
     /**
@@ -424,22 +718,20 @@ public class Bugsnag implements Closeable {
      * @see #buildReport
      */
     public boolean notify(Report report, Callback reportCallback) {
+        return notify(report, reportCallback, false);
+    }
+
+    /**
+     * @param admitted true if the report was built for a throwable which has already passed
+     *                 {@link #admit(Throwable, double)}, so the checks before callbacks are skipped
+     */
+    private boolean notify(Report report, Callback reportCallback, boolean admitted) {
         if (report == null) {
             LOGGER.warn("Tried to call notify with a null Report");
             return false;
         }
 
-        // Don't notify if this error class should be ignored
-        if (config.shouldIgnoreClass(report.getExceptionName())) {
-            LOGGER.debug("Error not reported to Bugsnag - {} is in 'ignoreClasses'",
-                report.getExceptionName());
-            return false;
-        }
-
-        // Don't notify unless releaseStage is in notifyReleaseStages
-        if (!config.shouldNotifyForReleaseStage()) {
-            LOGGER.debug("Error not reported to Bugsnag - {} is not in 'notifyReleaseStages'",
-                config.releaseStage);
+        if (!admitted && !admit(report)) {
             return false;
         }
 
@@ -480,11 +772,43 @@ public class Bugsnag implements Closeable {
             }
         }
 
+        // Sample handled reports whose sample rate depends on the severity set by callbacks
+        if (!report.getUnhandled()) {
+            double sampleRate = report.getSampleRate();
+            if (Double.isNaN(sampleRate)) {
+                sampleRate = config.sampler.getSampleRate(report.getExceptionName(), null,
+                    report.getHandledState().getCurrentSeverity());
+                if (!Sampler.isSampled(report.getException(), sampleRate)) {
+                    LOGGER.debug("Error not reported to Bugsnag - {} was not sampled",
+                        report.getExceptionName());
+                    return false;
+                }
+            }
+
+            // Record the sample rate so that the number of occurrences can be estimated
+            if (sampleRate < 1) {
+                report.addToTab(Sampler.SAMPLING_TAB, "sampleRate", sampleRate);
+            }
+        }
+
+        // The context may have been set by a callback, so its limit is checked last
+        if (!config.rateLimiter.tryAcquireContext(report.getContext())) {
+            LOGGER.debug("Error not reported to Bugsnag - rate limit exceeded for context {}",
+                report.getContext());
+            return false;
+        }
+
         if (config.delivery == null) {
             LOGGER.debug("Error not reported to Bugsnag - no delivery is set");
             return false;
         }
 
+        // Record how many reports were dropped by the rate limits since the last one was sent
+        long suppressedCount = config.rateLimiter.takeSuppressedCount();
+        if (suppressedCount > 0) {
+            report.addToTab(RATE_LIMIT_TAB, "suppressedReports", suppressedCount);
+        }
+
         // increment session handled/unhandled count
         Session session = sessionTracker.getSession();
 
@@ -508,6 +832,72 @@ public class Bugsnag implements Closeable {
         return true;
     }
 
+    /**
+     * Finds the sample rate for a handled error before its report is built.
+     *
+     * @param severity   the severity chosen by the caller, or null if callbacks may change it
+     * @param loggerName the logger which reported the error, or null
+     * @return the sample rate, or NaN if it depends on the severity set by callbacks
+     */
+    private double getSampleRate(Throwable throwable, Severity severity, String loggerName) {
+        if (throwable == null) {
+            return Double.NaN;
+        }
+        return config.sampler.getSampleRate(throwable.getClass().getName(), loggerName, severity);
+    }
+
+    /**
+     * Checks the configuration, sample rate and rate limits before a report is built for the
+     * throwable, so that rejected reports cost as little as possible on the calling thread.
+     */
+    private boolean admit(Throwable throwable, double sampleRate) {
+        if (throwable == null) {
+            return true;
+        }
+        String errorClass = throwable.getClass().getName();
+        if (!isNotifiable(errorClass, throwable)) {
+            return false;
+        }
+        if (!Sampler.isSampled(throwable, sampleRate)) {
+            LOGGER.debug("Error not reported to Bugsnag - {} was not sampled", errorClass);
+            return false;
+        }
+        return acquireRateLimit(errorClass);
+    }
+
+    /**
+     * Checks the configuration and rate limits for a report which was built by the caller.
+     */
+    private boolean admit(Report report) {
+        String errorClass = report.getExceptionName();
+        return isNotifiable(errorClass, report.getException()) && acquireRateLimit(errorClass);
+    }
+
+    private boolean isNotifiable(String errorClass, Throwable throwable) {
+        // Don't notify if this error class should be ignored
+        if (config.shouldIgnoreClass(errorClass, throwable)) {
+            LOGGER.debug("Error not reported to Bugsnag - {} is in 'ignoreClasses'", errorClass);
+            return false;
+        }
+
+        // Don't notify unless releaseStage is in notifyReleaseStages
+        if (!config.shouldNotifyForReleaseStage()) {
+            LOGGER.debug("Error not reported to Bugsnag - {} is not in 'notifyReleaseStages'",
+                config.releaseStage);
+            return false;
+        }
+        return true;
+    }
+
+    // Rate limits are checked after the configuration, so that ignored errors don't use them up
+    private boolean acquireRateLimit(String errorClass) {
+        if (!config.rateLimiter.tryAcquire(errorClass)) {
+            LOGGER.debug("Error not reported to Bugsnag - rate limit exceeded for {}", errorClass);
+            return false;
+        }
+        return true;
+    }
+
     /**
      * Manually starts tracking a new session.
      *
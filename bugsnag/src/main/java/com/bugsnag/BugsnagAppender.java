@@ -1,12 +1,14 @@
 package com.bugsnag;
 
 import com.bugsnag.callbacks.Callback;
+import com.bugsnag.delivery.Compression;
 import com.bugsnag.delivery.Delivery;
 import com.bugsnag.logback.BugsnagMarker;
 import com.bugsnag.logback.LogbackMetaData;
 import com.bugsnag.logback.LogbackMetaDataKey;
 import com.bugsnag.logback.LogbackMetaDataTab;
 import com.bugsnag.logback.ProxyConfiguration;
+import com.bugsnag.util.FilteredMap;
 
 import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.spi.ILoggingEvent;
@@ -66,12 +68,36 @@ public class BugsnagAppender extends UnsynchronizedAppenderBase<ILoggingEvent> {
     /** Release stage. */
     private String releaseStage;
 
+    /** Whether subclasses of the ignored classes are ignored too. */
+    private boolean ignoreSubclasses = false;
+
+    /** Whether exceptions with a cause of an ignored class are ignored too. */
+    private boolean ignoreCauses = false;
+
     /** Whether thread state should be sent to Bugsnag. */
     private boolean sendThreads = false;
 
     /** Bugsnag API request timeout. */
     private int timeout;
 
+    /** Bugsnag API request read timeout. */
+    private int readTimeout;
+
+    /** Bugsnag API request deadline. */
+    private int deadline;
+
+    /** Maximum size of an error report before it is trimmed. */
+    private Integer maxPayloadBytes;
+
+    /** Maximum number of error reports to send per second. */
+    private int rateLimit;
+
+    /** Whether to deliver on virtual threads when supported. */
+    private boolean useVirtualThreads = false;
+
+    /** Bugsnag API request body compression. */
+    private Compression compression;
+
     /** Application version. */
     private String appVersion;
 
@@ -149,7 +175,8 @@ public class BugsnagAppender extends UnsynchronizedAppenderBase<ILoggingEvent> {
                                     reportCallback.beforeNotify(report);
                                 }
                             }
-                        });
+                        },
+                        event.getLoggerName());
             }
         }
     }
@@ -167,7 +194,9 @@ public class BugsnagAppender extends UnsynchronizedAppenderBase<ILoggingEvent> {
             // Loop through all the keys and put them in the correct tabs
 
             for (Map.Entry<String, String> entry : propertyMap.entrySet()) {
-                report.addToTab("Context", entry.getKey(), entry.getValue());
+                String value = report.isFilteredKey(entry.getKey())
+                        ? FilteredMap.FILTERED_PLACEHOLDER : entry.getValue();
+                report.addToTab("Context", entry.getKey(), value);
             }
         }
     }
@@ -254,11 +283,35 @@ public class BugsnagAppender extends UnsynchronizedAppenderBase<ILoggingEvent> {
             bugsnag.setTimeout(timeout);
         }
 
+        if (readTimeout > 0) {
+            bugsnag.setReadTimeout(readTimeout);
+        }
+
+        if (deadline > 0) {
+            bugsnag.setDeadline(deadline);
+        }
+
+        if (compression != null) {
+            bugsnag.setCompression(compression);
+        }
+
+        if (maxPayloadBytes != null) {
+            bugsnag.setMaxPayloadBytes(maxPayloadBytes);
+        }
+
+        bugsnag.setRateLimit(rateLimit);
+
+        if (useVirtualThreads) {
+            bugsnag.setUseVirtualThreads(true);
+        }
+
         if (filteredProperties.size() > 0) {
             bugsnag.setFilters(filteredProperties.toArray(new String[0]));
         }
 
         bugsnag.setIgnoreClasses(ignoredClasses.toArray(new String[0]));
+        bugsnag.setIgnoreSubclasses(ignoreSubclasses);
+        bugsnag.setIgnoreCauses(ignoreCauses);
 
         if (notifyReleaseStages.size() > 0) {
             bugsnag.setNotifyReleaseStages(notifyReleaseStages.toArray(new String[0]));
@@ -417,6 +470,28 @@ public class BugsnagAppender extends UnsynchronizedAppenderBase<ILoggingEvent> {
         }
     }
 
+    /**
+     * @see Bugsnag#setIgnoreSubclasses(boolean)
+     */
+    public void setIgnoreSubclasses(boolean ignoreSubclasses) {
+        this.ignoreSubclasses = ignoreSubclasses;
+
+        if (bugsnag != null) {
+            bugsnag.setIgnoreSubclasses(ignoreSubclasses);
+        }
+    }
+
+    /**
+     * @see Bugsnag#setIgnoreCauses(boolean)
+     */
+    public void setIgnoreCauses(boolean ignoreCauses) {
+        this.ignoreCauses = ignoreCauses;
+
+        if (bugsnag != null) {
+            bugsnag.setIgnoreCauses(ignoreCauses);
+        }
+    }
+
     /**
      * @see Bugsnag#setNotifyReleaseStages(String...)
      */
@@ -509,6 +584,72 @@ public class BugsnagAppender extends UnsynchronizedAppenderBase<ILoggingEvent> {
         }
     }
 
+    /**
+     * @see Bugsnag#setReadTimeout(int)
+     */
+    public void setReadTimeout(int readTimeout) {
+        this.readTimeout = readTimeout;
+
+        if (bugsnag != null) {
+            bugsnag.setReadTimeout(readTimeout);
+        }
+    }
+
+    /**
+     * @see Bugsnag#setDeadline(int)
+     */
+    public void setDeadline(int deadline) {
+        this.deadline = deadline;
+
+        if (bugsnag != null) {
+            bugsnag.setDeadline(deadline);
+        }
+    }
+
+    /**
+     * @see Bugsnag#setMaxPayloadBytes(int)
+     */
+    public void setMaxPayloadBytes(int maxPayloadBytes) {
+        this.maxPayloadBytes = maxPayloadBytes;
+
+        if (bugsnag != null) {
+            bugsnag.setMaxPayloadBytes(maxPayloadBytes);
+        }
+    }
+
+    /**
+     * @see Bugsnag#setRateLimit(int)
+     */
+    public void setRateLimit(int rateLimit) {
+        this.rateLimit = rateLimit;
+
+        if (bugsnag != null) {
+            bugsnag.setRateLimit(rateLimit);
+        }
+    }
+
+    /**
+     * @see Bugsnag#setUseVirtualThreads(boolean)
+     */
+    public void setUseVirtualThreads(boolean useVirtualThreads) {
+        this.useVirtualThreads = useVirtualThreads;
+
+        if (bugsnag != null) {
+            bugsnag.setUseVirtualThreads(useVirtualThreads);
+        }
+    }
+
+    /**
+     * @see Bugsnag#setCompression(Compression)
+     */
+    public void setCompression(Compression compression) {
+        this.compression = compression;
+
+        if (bugsnag != null) {
+            bugsnag.setCompression(compression);
+        }
+    }
+
     /**
      * @see Bugsnag#setAppVersion(String)
      */
@@ -0,0 +1,278 @@
+package com.bugsnag;
+
+import com.bugsnag.delivery.Delivery;
+import com.bugsnag.delivery.ForwardingHttpDelivery;
+import com.bugsnag.serialization.Serializer;
+import com.bugsnag.util.IdleExecutors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collapses duplicate error reports into a single report. Reports are duplicates when they have
+ * the same error class, top in-project stackframes (or top stackframes, if none are
+ * in-project), context, grouping hash and API key. The first report is held until no duplicate
+ * has been received for the window time, and duplicates are dropped instead of being
+ * serialized and sent. Each report is held for at most the maximum hold time, so that an error
+ * which keeps recurring is still reported. The first report is then sent with the total number
+ * of occurrences in its "coalescing" meta data tab. Anything other than a single error report,
+ * such as a session payload, is passed straight to the base delivery.
+ *
+ * <p>At most {@link #setMaxFingerprints(int) a maximum number} of distinct reports are held at
+ * once. When another arrives, the report which was least recently duplicated is sent early.
+ */
+public class CoalescingDelivery extends ForwardingHttpDelivery {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CoalescingDelivery.class);
+    private static final int SHUTDOWN_TIMEOUT_MS = 5000;
+    private static final int FINGERPRINT_FRAMES = 3;
+
+    static final String COALESCING_TAB = "coalescing";
+
+    public static final int DEFAULT_WINDOW_MS = 1000;
+    public static final int DEFAULT_MAX_HOLD_MS = 10000;
+    public static final int DEFAULT_MAX_FINGERPRINTS = 1000;
+
+
+    // In access order, so that the least recently duplicated report is sent first when full
+    private final LinkedHashMap<List<Object>, Occurrences> pending =
+            new LinkedHashMap<List<Object>, Occurrences>(16, 0.75f, true);
+    private final AtomicLong duplicateCount = new AtomicLong();
+
+    private volatile int windowMs = DEFAULT_WINDOW_MS;
+    private volatile int maxHoldMs = DEFAULT_MAX_HOLD_MS;
+    private volatile int maxFingerprints = DEFAULT_MAX_FINGERPRINTS;
+    private volatile boolean shuttingDown = false;
+
+    private final ScheduledThreadPoolExecutor flushExecutor =
+            IdleExecutors.newScheduledExecutor("bugsnag-coalescing-delivery-", SHUTDOWN_TIMEOUT_MS);
+
+    /**
+     * Creates a new instance, which sends reports using the given delivery
+     *
+     * @param baseDelivery the delivery to send reports with
+     */
+    public CoalescingDelivery(Delivery baseDelivery) {
+        super(baseDelivery);
+
+        // Reports waiting for their window to end are sent directly on close
+        flushExecutor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    /**
+     * Set how long a report is held for duplicates to be collapsed into it. Each duplicate
+     * extends the time the report is held by the window, up to the maximum hold time.
+     *
+     * @param windowMs the time to wait for a duplicate before sending a report (in ms)
+     */
+    public void setWindowMs(int windowMs) {
+        if (windowMs <= 0) {
+            throw new IllegalArgumentException("Window must be greater than zero");
+        }
+        this.windowMs = windowMs;
+    }
+
+    /**
+     * Set the longest time a report is held after it was first received, however many
+     * duplicates are received.
+     *
+     * @param maxHoldMs the maximum time to wait before sending a report (in ms)
+     */
+    public void setMaxHoldMs(int maxHoldMs) {
+        if (maxHoldMs <= 0) {
+            throw new IllegalArgumentException("Max hold time must be greater than zero");
+        }
+        this.maxHoldMs = maxHoldMs;
+    }
+
+    /**
+     * Set the maximum number of distinct reports to hold at once.
+     *
+     * @param maxFingerprints the maximum number of reports waiting to be sent
+     */
+    public void setMaxFingerprints(int maxFingerprints) {
+        if (maxFingerprints <= 0) {
+            throw new IllegalArgumentException("Max fingerprints must be greater than zero");
+        }
+        this.maxFingerprints = maxFingerprints;
+    }
+
+    /**
+     * @return the number of duplicate reports which have been dropped
+     */
+    public long getDuplicateCount() {
+        return duplicateCount.get();
+    }
+
+    @Override
+    public void deliver(Serializer serializer, Object object, Map<String, String> headers) {
+        if (!(object instanceof Notification)
+                || ((Notification) object).getEvents().size() != 1) {
+            baseDelivery.deliver(serializer, object, headers);
+            return;
+        }
+
+        Notification notification = (Notification) object;
+        List<Object> fingerprint = getFingerprint(notification);
+        Occurrences evicted = null;
+        boolean held = false;
+
+        synchronized (pending) {
+            if (!shuttingDown) {
+                held = true;
+                long now = System.nanoTime();
+                Occurrences occurrences = pending.get(fingerprint);
+                if (occurrences != null) {
+                    occurrences.count++;
+                    occurrences.extendDeadline(now, windowMs);
+                    duplicateCount.incrementAndGet();
+                    return;
+                }
+
+                occurrences = new Occurrences(serializer, notification, headers, now, maxHoldMs);
+                occurrences.extendDeadline(now, windowMs);
+                pending.put(fingerprint, occurrences);
+                scheduleWindowFlush(fingerprint, occurrences,
+                        TimeUnit.NANOSECONDS.toMillis(occurrences.deadline - now));
+
+                if (pending.size() > maxFingerprints) {
+                    Iterator<Occurrences> eldest = pending.values().iterator();
+                    evicted = eldest.next();
+                    eldest.remove();
+                }
+            }
+        }
+
+        if (!held) {
+            baseDelivery.deliver(serializer, object, headers);
+        } else if (evicted != null) {
+            deliverOccurrences(evicted);
+        }
+    }
+
+    /**
+     * Identifies duplicate reports by their error class, top in-project stackframes, context,
+     * grouping hash and API key. The top stackframes are used instead if none are in-project,
+     * such as when no project packages are set.
+     */
+    static List<Object> getFingerprint(Notification notification) {
+        Report report = notification.getEvents().get(0);
+        List<Object> fingerprint = new ArrayList<Object>(FINGERPRINT_FRAMES + 4);
+        fingerprint.add(report.getExceptionName());
+        fingerprint.add(report.getContext());
+        fingerprint.add(report.getGroupingHash());
+        fingerprint.add(notification.getApiKey());
+
+        Configuration config = notification.getConfig();
+        StackTraceElement[] stackTrace = report.getException().getStackTrace();
+        for (StackTraceElement element : stackTrace) {
+            if (fingerprint.size() == FINGERPRINT_FRAMES + 4) {
+                break;
+            }
+            if (config.inProject(element.getClassName())) {
+                fingerprint.add(element);
+            }
+        }
+        if (fingerprint.size() == 4) {
+            for (int index = 0; index < stackTrace.length && index < FINGERPRINT_FRAMES; index++) {
+                fingerprint.add(stackTrace[index]);
+            }
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Schedules the report to be sent once its window ends. Duplicates only move the deadline,
+     * and the flush reschedules itself if the deadline has moved when it runs.
+     */
+    private void scheduleWindowFlush(final List<Object> fingerprint,
+                                     final Occurrences occurrences,
+                                     long delay) {
+        flushExecutor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (pending) {
+                    // The report may already have been sent because the table was full
+                    if (pending.get(fingerprint) != occurrences) {
+                        return;
+                    }
+                    long remaining = occurrences.deadline - System.nanoTime();
+                    if (remaining > 0 && !shuttingDown) {
+                        scheduleWindowFlush(fingerprint, occurrences,
+                                TimeUnit.NANOSECONDS.toMillis(remaining) + 1);
+                        return;
+                    }
+                    pending.remove(fingerprint);
+                }
+                deliverOccurrences(occurrences);
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void deliverOccurrences(Occurrences occurrences) {
+        int count;
+        synchronized (pending) {
+            count = occurrences.count;
+        }
+        if (count > 1) {
+            occurrences.notification.getEvents().get(0)
+                    .addToTab(COALESCING_TAB, "occurrences", count);
+        }
+        baseDelivery.deliver(occurrences.serializer, occurrences.notification,
+                occurrences.headers);
+    }
+
+    @Override
+    public void close() {
+        List<Occurrences> remaining;
+        synchronized (pending) {
+            shuttingDown = true;
+            remaining = new ArrayList<Occurrences>(pending.values());
+            pending.clear();
+        }
+        flushExecutor.shutdown();
+
+        try {
+            if (!flushExecutor.awaitTermination(SHUTDOWN_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                LOGGER.warn("Shutdown of coalescing flushing thread took too long");
+            }
+        } catch (InterruptedException ex) {
+            LOGGER.warn("Shutdown of coalescing flushing thread was interrupted");
+        }
+
+        for (Occurrences occurrences : remaining) {
+            deliverOccurrences(occurrences);
+        }
+        baseDelivery.close();
+    }
+
+    private static class Occurrences {
+        private final Serializer serializer;
+        private final Notification notification;
+        private final Map<String, String> headers;
+        private final long maxDeadline;
+        private int count = 1;
+        private long deadline;
+
+        Occurrences(Serializer serializer, Notification notification,
+                    Map<String, String> headers, long received, int maxHoldMs) {
+            this.serializer = serializer;
+            this.notification = notification;
+            this.headers = headers;
+            this.maxDeadline = received + TimeUnit.MILLISECONDS.toNanos(maxHoldMs);
+        }
+
+        void extendDeadline(long received, int windowMs) {
+            long extended = received + TimeUnit.MILLISECONDS.toNanos(windowMs);
+            deadline = extended - maxDeadline < 0 ? extended : maxDeadline;
+        }
+    }
+}
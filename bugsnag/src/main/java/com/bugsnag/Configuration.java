@@ -9,16 +9,20 @@ import com.bugsnag.delivery.Delivery;
 import com.bugsnag.delivery.HttpDelivery;
 import com.bugsnag.delivery.SyncHttpDelivery;
 import com.bugsnag.serialization.Serializer;
+import com.bugsnag.util.KeyFilter;
+import com.bugsnag.util.VirtualThreads;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.List;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -29,6 +33,7 @@ public class Configuration {
 
     private static final String HEADER_API_PAYLOAD_VERSION = "Bugsnag-Payload-Version";
     private static final String HEADER_API_KEY = "Bugsnag-Api-Key";
+
     private static final String HEADER_BUGSNAG_SENT_AT = "Bugsnag-Sent-At";
 
     public String apiKey;
@@ -37,17 +42,32 @@ public class Configuration {
     public Delivery delivery = new AsyncHttpDelivery(SyncHttpDelivery.DEFAULT_NOTIFY_ENDPOINT);
     public Delivery sessionDelivery =
             new AsyncHttpDelivery(SyncHttpDelivery.DEFAULT_SESSION_ENDPOINT);
+    // Filters are compiled, so assign a new array to change them rather than modifying it
     public String[] filters = new String[]{"password", "secret", "Authorization", "Cookie"};
+    // Lookups use sets built from these arrays, so assign new arrays rather than modifying them
     public String[] ignoreClasses;
     public String[] notifyReleaseStages = null;
+    public boolean ignoreSubclasses = false;
+    public boolean ignoreCauses = false;
+    // Lookups are cached, so assign a new array to change the packages rather than modifying it
     public String[] projectPackages;
     public String releaseStage;
     public boolean sendThreads = false;
+    public ThreadCapturePolicy threadCapturePolicy = ThreadCapturePolicy.allThreads();
+    // Reports are only buffered and trimmed when a limit is set
+    public int maxPayloadBytes = 0;
 
     Collection<Callback> callbacks = new ConcurrentLinkedQueue<Callback>();
     Serializer serializer = new Serializer();
+    final RateLimiter rateLimiter = new RateLimiter();
+    final Sampler sampler = new Sampler();
     private final AtomicBoolean autoCaptureSessions = new AtomicBoolean(true);
     private final AtomicBoolean sendUncaughtExceptions = new AtomicBoolean(true);
+    private final AtomicBoolean useVirtualThreads = new AtomicBoolean(false);
+    private volatile ProjectPackages projectPackageIndex;
+    private volatile CompiledFilters compiledFilters;
+    private volatile IgnoreClasses ignoreClassIndex;
+    private volatile StringSet notifyReleaseStageSet;
 
     Configuration(String apiKey) {
         this.apiKey = apiKey;
@@ -63,21 +83,44 @@ public class Configuration {
     }
 
     boolean shouldNotifyForReleaseStage() {
-        if (notifyReleaseStages == null) {
+        String[] stages = notifyReleaseStages;
+        if (stages == null) {
             return true;
         }
 
-        List<String> stages = Arrays.asList(notifyReleaseStages);
-        return stages.contains(releaseStage);
+        StringSet set = notifyReleaseStageSet;
+        if (set == null || set.source != stages) {
+            set = new StringSet(stages);
+            notifyReleaseStageSet = set;
+        }
+        return set.values.contains(releaseStage);
     }
 
-    boolean shouldIgnoreClass(String className) {
-        if (ignoreClasses == null) {
+    /**
+     * @param errorClass the class name of the error
+     * @param throwable  the error, which is also matched against subclasses and causes when
+     *                   enabled, or null
+     * @return true if the error should be ignored
+     */
+    boolean shouldIgnoreClass(String errorClass, Throwable throwable) {
+        String[] classes = ignoreClasses;
+        if (classes == null) {
             return false;
         }
 
-        List<String> classes = Arrays.asList(ignoreClasses);
-        return classes.contains(className);
+        // Rebuild the index when a new array of classes is set
+        boolean subclasses = ignoreSubclasses;
+        IgnoreClasses index = ignoreClassIndex;
+        if (index == null || !index.isIndexOf(classes, subclasses)) {
+            index = new IgnoreClasses(classes, subclasses);
+            ignoreClassIndex = index;
+        }
+
+        if (index.contains(errorClass)) {
+            return true;
+        }
+        return throwable != null && (subclasses || ignoreCauses)
+                && index.matches(throwable, ignoreCauses);
     }
 
     void addCallback(Callback callback) {
@@ -87,15 +130,40 @@ public class Configuration {
     }
 
     boolean inProject(String className) {
-        if (projectPackages != null) {
-            for (String packageName : projectPackages) {
-                if (packageName != null && className.startsWith(packageName)) {
-                    return true;
-                }
-            }
+        String[] packages = projectPackages;
+        if (packages == null) {
+            return false;
         }
 
-        return false;
+        // Rebuild the index when a new array of packages is set
+        ProjectPackages index = projectPackageIndex;
+        if (index == null || !index.isIndexOf(packages)) {
+            index = new ProjectPackages(packages);
+            projectPackageIndex = index;
+        }
+        return index.contains(className);
+    }
+
+    /**
+     * Sets the filters, compiling them immediately so that invalid patterns are reported here.
+     */
+    void setFilters(String[] filters) {
+        CompiledFilters compiled = new CompiledFilters(filters, KeyFilter.compile(filters));
+        this.filters = filters;
+        compiledFilters = compiled;
+    }
+
+    /**
+     * @return the filters for meta data keys, compiled from {@link #filters}
+     */
+    KeyFilter getKeyFilter() {
+        String[] source = filters;
+        CompiledFilters compiled = compiledFilters;
+        if (compiled == null || compiled.source != source) {
+            compiled = new CompiledFilters(source, KeyFilter.compile(source));
+            compiledFilters = compiled;
+        }
+        return compiled.keyFilter;
     }
 
     public void setAutoCaptureSessions(boolean autoCaptureSessions) {
@@ -114,6 +182,31 @@ public class Configuration {
         return sendUncaughtExceptions.get();
     }
 
+    /**
+     * Set whether background work runs on virtual threads when running on Java 21 or later.
+     * This applies to delivery by the default {@link AsyncHttpDelivery}, so if you are setting
+     * a custom {@link Delivery}, this method should be called after the custom implementation
+     * has been set.
+     *
+     * @param useVirtualThreads true to use virtual threads
+     */
+    public void setUseVirtualThreads(boolean useVirtualThreads) {
+        this.useVirtualThreads.set(useVirtualThreads);
+        if (delivery instanceof AsyncHttpDelivery) {
+            ((AsyncHttpDelivery) delivery).setUseVirtualThreads(useVirtualThreads);
+        }
+        if (sessionDelivery instanceof AsyncHttpDelivery) {
+            ((AsyncHttpDelivery) sessionDelivery).setUseVirtualThreads(useVirtualThreads);
+        }
+    }
+
+    /**
+     * @return true if background work should run on virtual threads, when supported
+     */
+    public boolean shouldUseVirtualThreads() {
+        return useVirtualThreads.get() && VirtualThreads.isSupported();
+    }
+
     /**
      * Set the endpoints to send data to. By default we'll send error reports to
      * https://notify.bugsnag.com, and sessions to https://sessions.bugsnag.com, but you can
@@ -178,4 +271,24 @@ public class Configuration {
         map.put(HEADER_BUGSNAG_SENT_AT, DateUtils.toIso8601(new Date()));
         return map;
     }
+
+    private static class CompiledFilters {
+        private final String[] source;
+        private final KeyFilter keyFilter;
+
+        CompiledFilters(String[] source, KeyFilter keyFilter) {
+            this.source = source;
+            this.keyFilter = keyFilter;
+        }
+    }
+
+    private static class StringSet {
+        private final String[] source;
+        private final Set<String> values;
+
+        StringSet(String[] source) {
+            this.source = source;
+            this.values = Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(source)));
+        }
+    }
 }
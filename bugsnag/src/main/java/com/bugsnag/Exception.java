@@ -2,6 +2,9 @@ package com.bugsnag;
 
 import com.bugsnag.serialization.Expose;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
 import java.util.List;
 
 class Exception {
@@ -30,6 +33,14 @@ class Exception {
         return Stackframe.getStacktrace(config, throwable.getStackTrace());
     }
 
+    void writeJson(JsonGenerator generator, int maxFrames) throws IOException {
+        generator.writeStartObject();
+        JsonUtils.writeStringField(generator, "errorClass", errorClass);
+        JsonUtils.writeStringField(generator, "message", getMessage());
+        Stackframe.writeStacktraceField(generator, config, throwable.getStackTrace(), maxFrames);
+        generator.writeEndObject();
+    }
+
     public void setErrorClass(String errorClass) {
         this.errorClass = errorClass;
     }
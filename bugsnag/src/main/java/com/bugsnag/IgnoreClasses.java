@@ -0,0 +1,96 @@
+package com.bugsnag;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Matches errors against the ignored class names. Names are held in a hash set, so an exact
+ * match is a single lookup. When subclasses are matched, the superclasses of each error class
+ * are walked once and the decision is cached by class name, so that later errors of the same
+ * class cost a single map lookup too. Caching by name rather than by class means that the
+ * cache doesn't keep classes, or the class loaders which loaded them, reachable.
+ */
+class IgnoreClasses {
+    private static final int MAX_CACHED_CLASSES = 1024;
+
+    // Guards against cause chains which loop back on themselves
+    private static final int MAX_CAUSES = 100;
+
+    private final String[] source;
+    private final boolean subclasses;
+    private final Set<String> names;
+    private final BoundedCache<String, Boolean> cache =
+            new BoundedCache<String, Boolean>(MAX_CACHED_CLASSES);
+
+    /**
+     * Indexes the class names. The array must not be modified afterwards.
+     *
+     * @param source     the names of the classes to ignore
+     * @param subclasses whether subclasses of the classes are ignored too
+     */
+    IgnoreClasses(String[] source, boolean subclasses) {
+        this.source = source;
+        this.subclasses = subclasses;
+        this.names = new HashSet<String>(Arrays.asList(source));
+    }
+
+    /**
+     * @return true if the index was built from this array of names with the same options
+     */
+    boolean isIndexOf(String[] source, boolean subclasses) {
+        return this.source == source && this.subclasses == subclasses;
+    }
+
+    /**
+     * @return true if the class name is one of the ignored names
+     */
+    boolean contains(String className) {
+        return names.contains(className);
+    }
+
+    /**
+     * @param throwable the error
+     * @param causes    whether to match the causes of the error too
+     * @return true if the error, or any of its causes, should be ignored
+     */
+    boolean matches(Throwable throwable, boolean causes) {
+        Throwable current = throwable;
+        for (int depth = 0; current != null && depth < MAX_CAUSES; depth++) {
+            if (matches(current.getClass())) {
+                return true;
+            }
+            if (!causes) {
+                break;
+            }
+            current = current.getCause();
+        }
+        return false;
+    }
+
+    /**
+     * @return true if the class, or a superclass when matching subclasses, should be ignored
+     */
+    boolean matches(Class<?> type) {
+        String className = type.getName();
+        if (!subclasses) {
+            return names.contains(className);
+        }
+
+        Boolean result = cache.get(className);
+        if (result == null) {
+            result = matchHierarchy(type);
+            cache.put(className, result);
+        }
+        return result;
+    }
+
+    private boolean matchHierarchy(Class<?> type) {
+        for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+            if (names.contains(current.getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
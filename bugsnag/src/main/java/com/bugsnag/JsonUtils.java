@@ -0,0 +1,118 @@
+package com.bugsnag;
+
+import com.bugsnag.util.FilteredMap;
+import com.bugsnag.util.KeyFilter;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Helpers for writing payloads with a {@link JsonGenerator}. Like the
+ * {@link com.bugsnag.serialization.Serializer}, they leave out null and empty values.
+ */
+class JsonUtils {
+
+    static void writeStringField(JsonGenerator generator, String name, String value)
+            throws IOException {
+        if (value != null && value.length() > 0) {
+            generator.writeStringField(name, value);
+        }
+    }
+
+    /**
+     * Writes a value of any type, serializing it with the mapper.
+     */
+    static void writeObjectField(JsonGenerator generator, String name, Object value)
+            throws IOException {
+        if (isEmpty(value)) {
+            return;
+        }
+        generator.writeObjectField(name, value);
+    }
+
+    private static boolean isEmpty(Object value) {
+        return value == null
+                || (value instanceof Map && ((Map<?, ?>) value).isEmpty())
+                || (value instanceof Collection && ((Collection<?>) value).isEmpty())
+                || (value instanceof String && ((String) value).length() == 0)
+                || (value.getClass().isArray() && Array.getLength(value) == 0);
+    }
+
+    /**
+     * Writes a map, replacing the values of keys which match the filter in it and in any nested
+     * maps as a {@link FilteredMap} would, without copying it. Strings longer than the maximum
+     * length are truncated.
+     */
+    static void writeFilteredMapField(JsonGenerator generator, String name, Map<?, ?> map,
+                                      KeyFilter keyFilter, int maxLength) throws IOException {
+        if (map == null || map.isEmpty()) {
+            return;
+        }
+        generator.writeFieldName(name);
+        writeFilteredMap(generator, map, keyFilter, maxLength);
+    }
+
+    private static void writeFilteredMap(JsonGenerator generator, Map<?, ?> map,
+                                         KeyFilter keyFilter, int maxLength) throws IOException {
+        generator.writeStartObject();
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            Object value = entry.getValue();
+            if (isEmpty(value)) {
+                continue;
+            }
+            String key = String.valueOf(entry.getKey());
+            generator.writeFieldName(key);
+            if (value instanceof Map) {
+                writeFilteredMap(generator, (Map<?, ?>) value, keyFilter, maxLength);
+            } else if (keyFilter.matches(key)) {
+                generator.writeString(FilteredMap.FILTERED_PLACEHOLDER);
+            } else if (maxLength < Integer.MAX_VALUE) {
+                generator.writeObject(truncate(value, maxLength));
+            } else {
+                generator.writeObject(value);
+            }
+        }
+        generator.writeEndObject();
+    }
+
+    /**
+     * Copies a value, truncating strings longer than the maximum length in it and in any nested
+     * maps, collections and arrays.
+     */
+    private static Object truncate(Object value, int maxLength) {
+        if (value instanceof String) {
+            String string = (String) value;
+            if (string.length() <= maxLength) {
+                return string;
+            }
+            return string.substring(0, maxLength)
+                    + "***" + (string.length() - maxLength) + " CHARS TRUNCATED***";
+        } else if (value instanceof Map) {
+            Map<Object, Object> copy = new LinkedHashMap<Object, Object>();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                copy.put(entry.getKey(), truncate(entry.getValue(), maxLength));
+            }
+            return copy;
+        } else if (value instanceof Collection) {
+            List<Object> copy = new ArrayList<Object>();
+            for (Object element : (Collection<?>) value) {
+                copy.add(truncate(element, maxLength));
+            }
+            return copy;
+        } else if (value instanceof Object[]) {
+            List<Object> copy = new ArrayList<Object>();
+            for (Object element : (Object[]) value) {
+                copy.add(truncate(element, maxLength));
+            }
+            return copy;
+        }
+        return value;
+    }
+}
@@ -1,22 +1,41 @@
 package com.bugsnag;
 
 import com.bugsnag.serialization.Expose;
+import com.bugsnag.serialization.TrimmableJsonStreamable;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+
+class Notification implements TrimmableJsonStreamable {
+    static final String TRIMMING_TAB = "payloadTrimming";
 
-class Notification {
     private Configuration config;
-    private Report report;
+    private List<Report> reports;
+    private volatile int maxBytes;
+    private volatile TrimLevel trimLevel = TrimLevel.NONE;
+
+    // Written to the metadata of each report, rather than added to the reports themselves
+    private volatile Map<String, Object> trimming;
 
     Notification(Configuration config, Report report) {
+        this(config, Collections.singletonList(report));
+    }
+
+    Notification(Configuration config, List<Report> reports) {
         this.config = config;
-        this.report = report;
+        this.reports = reports;
+        this.maxBytes = config.maxPayloadBytes;
     }
 
     @Expose
     public String getApiKey() {
-        String reportApiKey = report.getApiKey();
+        String reportApiKey = reports.get(0).getApiKey();
         return reportApiKey != null ? reportApiKey : config.apiKey;
     }
 
@@ -27,6 +46,64 @@ class Notification {
 
     @Expose
     public List<Report> getEvents() {
-        return Collections.singletonList(report);
+        return reports;
+    }
+
+    Configuration getConfig() {
+        return config;
+    }
+
+    @Override
+    public int getMaxBytes() {
+        return maxBytes;
+    }
+
+    void setMaxBytes(int maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Applies the next level of trimming, and records what has been trimmed so that it is
+     * written with each report.
+     */
+    @Override
+    public boolean trim(int size) {
+        TrimLevel[] levels = TrimLevel.values();
+        if (trimLevel.ordinal() == levels.length - 1) {
+            return false;
+        }
+        trimLevel = levels[trimLevel.ordinal() + 1];
+
+        List<String> trimmed = new ArrayList<String>();
+        for (int index = 1; index <= trimLevel.ordinal(); index++) {
+            trimmed.add(levels[index].toString());
+        }
+        Map<String, Object> tab = new LinkedHashMap<String, Object>();
+        tab.put("trimmed", trimmed);
+        tab.put("originalBytes", trimming == null ? size : trimming.get("originalBytes"));
+        trimming = tab;
+        return true;
+    }
+
+    @Override
+    public void writeJson(JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        JsonUtils.writeStringField(generator, "apiKey", getApiKey());
+        generator.writeFieldName("notifier");
+        getNotifier().writeJson(generator);
+
+        if (!reports.isEmpty()) {
+            generator.writeArrayFieldStart("events");
+            for (Report report : reports) {
+                if (report.getClass() == Report.class) {
+                    report.writeJson(generator, trimLevel, trimming);
+                } else {
+                    // Subclasses may expose extra properties, so introspect them
+                    generator.writeObject(report);
+                }
+            }
+            generator.writeEndArray();
+        }
+        generator.writeEndObject();
     }
 }
@@ -2,16 +2,29 @@ package com.bugsnag;
 
 import com.bugsnag.serialization.Expose;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.core.json.JsonGeneratorImpl;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
 class Notifier {
 
     private static final String NOTIFIER_NAME = "Bugsnag Java";
     private static final String NOTIFIER_VERSION = "3.6.1";
     private static final String NOTIFIER_URL = "https://github.com/bugsnag/bugsnag-java";
 
-    private String notifierName = NOTIFIER_NAME;
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private volatile String notifierName = NOTIFIER_NAME;
+    private volatile SerializableString json;
 
     void setNotifierName(String notifierName) {
         this.notifierName = notifierName;
+        this.json = null;
     }
 
     @Expose
@@ -28,4 +41,34 @@ class Notifier {
     public String getUrl() {
         return NOTIFIER_URL;
     }
+
+    /**
+     * Writes the notifier, which is the same in every payload, so it is serialized once and
+     * copied into the output.
+     */
+    void writeJson(JsonGenerator generator) throws IOException {
+        if (!(generator instanceof JsonGeneratorImpl)) {
+            // Raw values can only be spliced into JSON text, not binary formats
+            writeFields(generator);
+            return;
+        }
+        SerializableString fragment = json;
+        if (fragment == null) {
+            StringWriter writer = new StringWriter();
+            JsonGenerator fragmentGenerator = JSON_FACTORY.createGenerator(writer);
+            writeFields(fragmentGenerator);
+            fragmentGenerator.close();
+            fragment = new SerializedString(writer.toString());
+            json = fragment;
+        }
+        generator.writeRawValue(fragment);
+    }
+
+    private void writeFields(JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        JsonUtils.writeStringField(generator, "name", getName());
+        JsonUtils.writeStringField(generator, "version", getVersion());
+        JsonUtils.writeStringField(generator, "url", getUrl());
+        generator.writeEndObject();
+    }
 }
@@ -4,6 +4,7 @@ class NotifierUtils {
 
     private static final boolean IS_SPRING_NOTIFIER = hasBugsnagSpringClz();
     private static final String BUGSNAG_SPRING_CLZ = "com.bugsnag.BugsnagSpringConfiguration";
+    private static final Notifier NOTIFIER = createNotifier();
 
     private static boolean hasBugsnagSpringClz() {
         try {
@@ -14,7 +15,14 @@ class NotifierUtils {
         }
     }
 
+    /**
+     * @return the notifier, which is shared by every payload
+     */
     static Notifier getNotifier() {
+        return NOTIFIER;
+    }
+
+    private static Notifier createNotifier() {
         Notifier notifier = new Notifier();
 
         if (IS_SPRING_NOTIFIER) {
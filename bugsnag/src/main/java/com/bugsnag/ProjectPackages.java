@@ -0,0 +1,84 @@
+package com.bugsnag;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Matches class names against the project packages. The packages are indexed in a prefix
+ * tree, so a lookup walks the class name once however many packages there are, and results
+ * are cached by class name so that frames from the same classes are only matched once.
+ */
+class ProjectPackages {
+    private static final int MAX_CACHED_CLASSES = 8192;
+
+    private final String[] packages;
+    private final Node root = new Node();
+    private final BoundedCache<String, Boolean> cache =
+            new BoundedCache<String, Boolean>(MAX_CACHED_CLASSES);
+
+    /**
+     * Indexes the packages. The array must not be modified afterwards.
+     *
+     * @param packages the package names, which may contain nulls
+     */
+    ProjectPackages(String[] packages) {
+        this.packages = packages;
+        for (String packageName : packages) {
+            if (packageName != null) {
+                add(packageName);
+            }
+        }
+    }
+
+    private void add(String packageName) {
+        Node node = root;
+        for (int index = 0; index < packageName.length(); index++) {
+            Character key = packageName.charAt(index);
+            Node child = node.children.get(key);
+            if (child == null) {
+                child = new Node();
+                node.children.put(key, child);
+            }
+            node = child;
+        }
+        node.terminal = true;
+    }
+
+    /**
+     * @return true if the index was built from this array of packages
+     */
+    boolean isIndexOf(String[] packages) {
+        return this.packages == packages;
+    }
+
+    /**
+     * @return true if the class name starts with any of the packages
+     */
+    boolean contains(String className) {
+        Boolean result = cache.get(className);
+        if (result == null) {
+            result = match(className);
+            cache.put(className, result);
+        }
+        return result;
+    }
+
+    private boolean match(String className) {
+        Node node = root;
+        for (int index = 0; !node.terminal; index++) {
+            if (index == className.length()) {
+                return false;
+            }
+            node = node.children.get(className.charAt(index));
+            if (node == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static class Node {
+        private final Map<Character, Node> children = new HashMap<Character, Node>();
+        private boolean terminal;
+    }
+}
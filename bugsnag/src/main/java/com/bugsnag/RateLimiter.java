@@ -0,0 +1,130 @@
+package com.bugsnag;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits the rate of error reports, globally, per error class and per context. Each limit is a
+ * token bucket which holds up to a second's worth of reports, so short bursts are allowed.
+ * Buckets are lock-free, so checking a limit costs a clock read and a compare-and-set.
+ *
+ * <p>The number of buckets for error classes and contexts is bounded. Buckets which are still
+ * in use are kept, and only those which have been idle the longest are discarded, so that
+ * many distinct contexts don't reset the limits of busy ones.
+ */
+class RateLimiter {
+
+    private static final int MAX_BUCKETS = 1000;
+
+    private volatile TokenBucket globalBucket;
+    private volatile int errorClassRate;
+    private volatile int contextRate;
+    private volatile BoundedCache<String, TokenBucket> errorClassBuckets =
+            new BoundedCache<String, TokenBucket>(MAX_BUCKETS);
+    private volatile BoundedCache<String, TokenBucket> contextBuckets =
+            new BoundedCache<String, TokenBucket>(MAX_BUCKETS);
+    private final AtomicLong suppressedCount = new AtomicLong();
+
+    void setGlobalRate(int reportsPerSecond) {
+        globalBucket = reportsPerSecond > 0 ? new TokenBucket(reportsPerSecond) : null;
+    }
+
+    void setErrorClassRate(int reportsPerSecond) {
+        errorClassRate = reportsPerSecond;
+        errorClassBuckets = new BoundedCache<String, TokenBucket>(MAX_BUCKETS);
+    }
+
+    void setContextRate(int reportsPerSecond) {
+        contextRate = reportsPerSecond;
+        contextBuckets = new BoundedCache<String, TokenBucket>(MAX_BUCKETS);
+    }
+
+    /**
+     * Takes a token for a report of the error class from its bucket and the global bucket.
+     *
+     * @return true if the report is within the limits
+     */
+    boolean tryAcquire(String errorClass) {
+        // Check the narrower limit first, so that one noisy class doesn't use up the global limit
+        if (!tryAcquireBucket(errorClassBuckets, errorClassRate, errorClass)) {
+            suppressedCount.incrementAndGet();
+            return false;
+        }
+        TokenBucket bucket = globalBucket;
+        if (bucket != null && !bucket.tryAcquire()) {
+            suppressedCount.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Takes a token for a report with the context from its bucket.
+     *
+     * @return true if the report is within the limit
+     */
+    boolean tryAcquireContext(String context) {
+        if (!tryAcquireBucket(contextBuckets, contextRate, context)) {
+            suppressedCount.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of reports suppressed since this was last called
+     */
+    long takeSuppressedCount() {
+        // Avoid a write in the common case where nothing was suppressed
+        return suppressedCount.get() == 0 ? 0 : suppressedCount.getAndSet(0);
+    }
+
+    private static boolean tryAcquireBucket(BoundedCache<String, TokenBucket> buckets,
+                                            int rate, String key) {
+        if (rate <= 0 || key == null) {
+            return true;
+        }
+        TokenBucket bucket = buckets.get(key);
+        if (bucket == null) {
+            TokenBucket newBucket = new TokenBucket(rate);
+            bucket = buckets.putIfAbsent(key, newBucket);
+            if (bucket == null) {
+                bucket = newBucket;
+            }
+        }
+        return bucket.tryAcquire();
+    }
+
+    /**
+     * A token bucket which stores the time at which it will next be full, rather than a count of
+     * tokens, so that taking a token is a single compare-and-set.
+     */
+    static class TokenBucket {
+        private final long nanosPerToken;
+        private final long capacityNanos;
+        private final AtomicLong fullAt;
+
+        TokenBucket(int tokensPerSecond) {
+            this.nanosPerToken = TimeUnit.SECONDS.toNanos(1) / tokensPerSecond;
+            this.capacityNanos = nanosPerToken * tokensPerSecond;
+            this.fullAt = new AtomicLong(System.nanoTime());
+        }
+
+        boolean tryAcquire() {
+            return tryAcquire(System.nanoTime());
+        }
+
+        boolean tryAcquire(long now) {
+            while (true) {
+                long current = fullAt.get();
+                long next = (current - now > 0 ? current : now) + nanosPerToken;
+                if (next - now > capacityNanos) {
+                    return false;
+                }
+                if (fullAt.compareAndSet(current, next)) {
+                    return true;
+                }
+            }
+        }
+    }
+}
@@ -4,9 +4,12 @@ import com.bugsnag.serialization.Expose;
 
 import com.bugsnag.util.FilteredMap;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -24,7 +27,9 @@ public class Report {
     private Diagnostics diagnostics;
     private boolean shouldCancel = false;
     private Map<String, Object> sessionMap;
-    private final List<ThreadState> threadStates;
+    private final ThreadSnapshot threadSnapshot;
+    private double sampleRate = Double.NaN;
+    private List<ThreadState> threadStates;
 
     /**
      * Create a report for the error.
@@ -45,12 +50,12 @@ public class Report {
         this.severity = handledState.getOriginalSeverity();
         diagnostics = new Diagnostics(this.config);
 
+        // Only capture the stacks here, as they are converted when the report is delivered
         if (config.sendThreads) {
             Throwable exc = handledState.isUnhandled() ? throwable : null;
-            Map<Thread, StackTraceElement[]> allStackTraces = Thread.getAllStackTraces();
-            threadStates = ThreadState.getLiveThreads(config, currentThread, allStackTraces, exc);
+            threadSnapshot = ThreadSnapshot.capture(config.threadCapturePolicy, currentThread, exc);
         } else {
-            threadStates = null;
+            threadSnapshot = null;
         }
     }
 
@@ -90,7 +95,10 @@ public class Report {
     }
 
     @Expose
-    protected List<ThreadState> getThreads() {
+    protected synchronized List<ThreadState> getThreads() {
+        if (threadStates == null && threadSnapshot != null) {
+            threadStates = threadSnapshot.toThreadStates(config);
+        }
         return threadStates;
     }
 
@@ -126,7 +134,29 @@ public class Report {
 
     @Expose
     public Map<String, Object> getMetaData() {
-        return new FilteredMap(diagnostics.metaData, Arrays.asList(config.filters));
+        return new FilteredMap(diagnostics.metaData, config.getKeyFilter());
+    }
+
+    /**
+     * @return the sample rate decided before the report was built, or NaN if it hasn't been
+     */
+    double getSampleRate() {
+        return sampleRate;
+    }
+
+    void setSampleRate(double sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    /**
+     * Checks whether the value for a meta data key would be filtered when the report is sent.
+     * Callbacks can use this to avoid collecting values which would be replaced anyway.
+     *
+     * @param key the meta data key
+     * @return true if the key matches the filters set with {@link Bugsnag#setFilters}
+     */
+    public boolean isFilteredKey(String key) {
+        return config.getKeyFilter().matches(key);
     }
 
     @Expose
@@ -149,6 +179,64 @@ public class Report {
         }
     }
 
+    /**
+     * Writes the report, producing the same JSON as introspecting its {@link Expose} getters
+     * unless it is being trimmed.
+     *
+     * @param trimming the payloadTrimming metadata tab to add, or null if it isn't trimmed
+     */
+    void writeJson(JsonGenerator generator, TrimLevel trimLevel,
+                   Map<String, Object> trimming) throws IOException {
+        int maxFrames = trimLevel.compareTo(TrimLevel.STACKFRAMES) >= 0
+                ? TrimLevel.MAX_STACKFRAMES : Integer.MAX_VALUE;
+        generator.writeStartObject();
+        JsonUtils.writeStringField(generator, "payloadVersion", getPayloadVersion());
+
+        List<Exception> exceptions = getExceptions();
+        if (!exceptions.isEmpty()) {
+            generator.writeArrayFieldStart("exceptions");
+            for (Exception exception : exceptions) {
+                exception.writeJson(generator, maxFrames);
+            }
+            generator.writeEndArray();
+        }
+
+        generator.writeBooleanField("unhandled", getUnhandled());
+        generator.writeObjectFieldStart("severityReason");
+        generator.writeStringField("type", handledState.calculateSeverityReasonType().toString());
+        JsonUtils.writeObjectField(generator, "attributes",
+                handledState.getSeverityReasonAttributes());
+        generator.writeEndObject();
+
+        List<ThreadState> threads = getThreads();
+        if (threads != null && !threads.isEmpty()) {
+            generator.writeArrayFieldStart("threads");
+            for (ThreadState thread : threads) {
+                thread.writeJson(generator,
+                        trimLevel.compareTo(TrimLevel.THREAD_STACKS) < 0);
+            }
+            generator.writeEndArray();
+        }
+
+        JsonUtils.writeStringField(generator, "groupingHash", getGroupingHash());
+        JsonUtils.writeStringField(generator, "severity", getSeverity());
+        JsonUtils.writeStringField(generator, "context", getContext());
+        JsonUtils.writeObjectField(generator, "app", getApp());
+        JsonUtils.writeObjectField(generator, "device", getDevice());
+        JsonUtils.writeObjectField(generator, "user", getUser());
+        // Filter the meta data as it is written, rather than copying it with getMetaData()
+        Map<String, Object> metaData = diagnostics.metaData;
+        if (trimming != null) {
+            metaData = new LinkedHashMap<String, Object>(metaData);
+            metaData.put(Notification.TRIMMING_TAB, trimming);
+        }
+        JsonUtils.writeFilteredMapField(generator, "metaData", metaData,
+                config.getKeyFilter(), trimLevel.compareTo(TrimLevel.METADATA_VALUES) >= 0
+                        ? TrimLevel.MAX_METADATA_STRING_LENGTH : Integer.MAX_VALUE);
+        JsonUtils.writeObjectField(generator, "session", getSession());
+        generator.writeEndObject();
+    }
+
     /**
      * @return The {@linkplain Throwable exception} which triggered this error report.
      */
@@ -0,0 +1,136 @@
+package com.bugsnag;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Decides which handled error reports to keep when only a sample of them should be sent. A
+ * sample rate can be set per error class, per logger and per severity, and the most specific
+ * one which applies is used, in that order.
+ *
+ * <p>Sampling is deterministic: an error is kept if a hash of its class and top stackframe is
+ * below the sample rate. Each kind of error is therefore always kept or always dropped at a
+ * given rate, on every instance of an application, so that occurrence counts can be
+ * reconstructed from the rate which is sent with each kept report.
+ */
+class Sampler {
+
+    static final String SAMPLING_TAB = "sampling";
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final ConcurrentMap<String, Double> errorClassRates =
+            new ConcurrentHashMap<String, Double>();
+    private final ConcurrentMap<String, Double> loggerRates =
+            new ConcurrentHashMap<String, Double>();
+    private final ConcurrentMap<Severity, Double> severityRates =
+            new ConcurrentHashMap<Severity, Double>();
+    private volatile boolean enabled = false;
+
+    void setErrorClassRate(String errorClass, double sampleRate) {
+        setRate(errorClassRates, errorClass, sampleRate);
+    }
+
+    void setLoggerRate(String loggerName, double sampleRate) {
+        setRate(loggerRates, loggerName, sampleRate);
+    }
+
+    void setSeverityRate(Severity severity, double sampleRate) {
+        setRate(severityRates, severity, sampleRate);
+    }
+
+    // A rate of 1 is stored too, as it overrides any less specific rate
+    private <K> void setRate(ConcurrentMap<K, Double> rates, K key, double sampleRate) {
+        rates.put(key, sampleRate);
+        enabled = hasSampledRate(errorClassRates) || hasSampledRate(loggerRates)
+                || hasSampledRate(severityRates);
+    }
+
+    private static boolean hasSampledRate(ConcurrentMap<?, Double> rates) {
+        for (Double rate : rates.values()) {
+            if (rate < 1) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Finds the sample rate for a report. A logger rate also applies to reports from the
+     * logger's descendants, so a rate for "com.example" applies to "com.example.Foo".
+     *
+     * @param errorClass the class of the error
+     * @param loggerName the name of the logger which reported the error, or null
+     * @param severity   the severity of the error, or null if it isn't known yet
+     * @return the most specific sample rate which applies, or NaN if none do
+     */
+    double getSampleRate(String errorClass, String loggerName, Severity severity) {
+        if (!enabled) {
+            return Double.NaN;
+        }
+        Double rate = errorClass != null ? errorClassRates.get(errorClass) : null;
+        if (rate == null && loggerName != null && !loggerRates.isEmpty()) {
+            rate = getLoggerRate(loggerName);
+        }
+        if (rate == null && severity != null) {
+            rate = severityRates.get(severity);
+        }
+        return rate != null ? rate : Double.NaN;
+    }
+
+    private Double getLoggerRate(String loggerName) {
+        String name = loggerName;
+        while (true) {
+            Double rate = loggerRates.get(name);
+            int index = name.lastIndexOf('.');
+            if (rate != null || index < 0) {
+                return rate;
+            }
+            name = name.substring(0, index);
+        }
+    }
+
+    /**
+     * @param throwable  the error
+     * @param sampleRate the sample rate, or NaN to keep every error
+     * @return true if the error should be kept
+     */
+    static boolean isSampled(Throwable throwable, double sampleRate) {
+        if (Double.isNaN(sampleRate) || sampleRate >= 1) {
+            return true;
+        }
+
+        // Use the top 53 bits of the hash as a fraction between 0 and 1
+        double fraction = (hash(throwable) >>> 11) * 0x1.0p-53;
+        return fraction < sampleRate;
+    }
+
+    /**
+     * Hashes the class and top stackframe of an error with FNV-1a, which unlike
+     * {@link Object#hashCode()} is the same in every JVM.
+     */
+    static long hash(Throwable throwable) {
+        long hash = hash(FNV_OFFSET_BASIS, throwable.getClass().getName());
+        StackTraceElement[] stackTrace = throwable.getStackTrace();
+        if (stackTrace.length > 0) {
+            hash = hash(hash, stackTrace[0].getClassName());
+            hash = hash(hash, stackTrace[0].getMethodName());
+        }
+
+        // Mix the bits, as the low bits of FNV-1a hashes of similar strings are correlated
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private static long hash(long hash, String value) {
+        long result = hash;
+        for (int index = 0; index < value.length(); index++) {
+            result ^= value.charAt(index);
+            result *= FNV_PRIME;
+        }
+        return result;
+    }
+}
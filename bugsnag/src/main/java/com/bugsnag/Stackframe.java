@@ -2,10 +2,25 @@ package com.bugsnag;
 
 import com.bugsnag.serialization.Expose;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
 class Stackframe {
+    private static final int METHOD_BUFFER_SIZE = 256;
+
+    // Field names are encoded once, rather than for every frame
+    private static final SerializableString STACKTRACE = new SerializedString("stacktrace");
+    private static final SerializableString FILE = new SerializedString("file");
+    private static final SerializableString METHOD = new SerializedString("method");
+    private static final SerializableString LINE_NUMBER = new SerializedString("lineNumber");
+    private static final SerializableString IN_PROJECT = new SerializedString("inProject");
+    private static final SerializableString UNKNOWN_FILE = new SerializedString("Unknown");
+
     private Configuration config;
     private StackTraceElement el;
 
@@ -23,6 +38,52 @@ class Stackframe {
         return stacktrace;
     }
 
+    /**
+     * Writes the stacktrace straight from the elements, without creating a frame for each.
+     * The method name is assembled in a buffer which is reused for every frame, rather than
+     * concatenating a new string per frame.
+     */
+    static void writeStacktraceField(JsonGenerator generator,
+                                     Configuration config,
+                                     StackTraceElement[] elements,
+                                     int maxFrames) throws IOException {
+        if (elements.length == 0) {
+            return;
+        }
+        char[] buffer = new char[METHOD_BUFFER_SIZE];
+        generator.writeFieldName(STACKTRACE);
+        generator.writeStartArray();
+        for (int index = 0; index < elements.length && index < maxFrames; index++) {
+            StackTraceElement el = elements[index];
+            String className = el.getClassName();
+            String methodName = el.getMethodName();
+            int classLength = className.length();
+            int length = classLength + 1 + methodName.length();
+            if (length > buffer.length) {
+                buffer = new char[Math.max(length, buffer.length * 2)];
+            }
+            className.getChars(0, classLength, buffer, 0);
+            buffer[classLength] = '.';
+            methodName.getChars(0, methodName.length(), buffer, classLength + 1);
+
+            generator.writeStartObject();
+            generator.writeFieldName(FILE);
+            if (el.getFileName() == null) {
+                generator.writeString(UNKNOWN_FILE);
+            } else {
+                generator.writeString(el.getFileName());
+            }
+            generator.writeFieldName(METHOD);
+            generator.writeString(buffer, 0, length);
+            generator.writeFieldName(LINE_NUMBER);
+            generator.writeNumber(el.getLineNumber());
+            generator.writeFieldName(IN_PROJECT);
+            generator.writeBoolean(config.inProject(className));
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+    }
+
     @Expose
     public String getFile() {
         return el.getFileName() == null ? "Unknown" : el.getFileName();
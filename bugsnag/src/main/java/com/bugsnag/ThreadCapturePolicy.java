@@ -0,0 +1,146 @@
+package com.bugsnag;
+
+import com.bugsnag.util.KeyFilter;
+
+import java.lang.management.ThreadInfo;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Controls which threads are captured when {@link Bugsnag#setSendThreads(boolean) sending
+ * threads} with error reports, and how many frames of each stack are kept. The thread
+ * reporting the error is always captured.
+ *
+ * <p>Policies are immutable, so each {@code with} method returns a new policy. For example,
+ * to capture at most 20 blocked or running request threads, with up to 50 frames each:
+ *
+ * <pre>
+ * ThreadCapturePolicy.allThreads()
+ *         .withNames("http-nio-")
+ *         .withStates(Thread.State.BLOCKED, Thread.State.RUNNABLE)
+ *         .withMaxThreads(20)
+ *         .withMaxFrames(50)
+ * </pre>
+ *
+ * <p>Threads are captured through the {@link java.lang.management.ThreadMXBean}. Policies
+ * which select threads by name or state look up the names and states of threads first, so
+ * that only the stacks of the selected threads are walked, to the frame limit.
+ */
+public final class ThreadCapturePolicy {
+
+    private static final ThreadCapturePolicy ALL_THREADS =
+            new ThreadCapturePolicy(false, null, null, Integer.MAX_VALUE, Integer.MAX_VALUE);
+
+    private static final ThreadCapturePolicy REPORTING_THREAD_ONLY =
+            new ThreadCapturePolicy(true, null, null, 1, Integer.MAX_VALUE);
+
+    private final boolean reportingThreadOnly;
+    private final KeyFilter names;
+    private final Set<Thread.State> states;
+    private final int maxThreads;
+    private final int maxFrames;
+
+    private ThreadCapturePolicy(boolean reportingThreadOnly, KeyFilter names,
+                                Set<Thread.State> states, int maxThreads, int maxFrames) {
+        this.reportingThreadOnly = reportingThreadOnly;
+        this.names = names;
+        this.states = states;
+        this.maxThreads = maxThreads;
+        this.maxFrames = maxFrames;
+    }
+
+    /**
+     * @return a policy which captures the full stack of every live thread, which is the default
+     */
+    public static ThreadCapturePolicy allThreads() {
+        return ALL_THREADS;
+    }
+
+    /**
+     * @return a policy which only captures the thread reporting the error
+     */
+    public static ThreadCapturePolicy reportingThreadOnly() {
+        return REPORTING_THREAD_ONLY;
+    }
+
+    /**
+     * Only captures threads with names matching any of the patterns. The patterns match in the
+     * same way as {@link Bugsnag#setFilters(String...) filters}, so plain patterns match names
+     * which contain them, and "regex:" and "glob:" patterns are also supported.
+     *
+     * @param patterns the patterns for thread names
+     * @return the new policy
+     */
+    public ThreadCapturePolicy withNames(String... patterns) {
+        return new ThreadCapturePolicy(reportingThreadOnly, KeyFilter.compile(patterns), states,
+                maxThreads, maxFrames);
+    }
+
+    /**
+     * Only captures threads in any of the states, such as {@link Thread.State#BLOCKED}.
+     *
+     * @param states the states of threads to capture
+     * @return the new policy
+     */
+    public ThreadCapturePolicy withStates(Thread.State... states) {
+        Set<Thread.State> set = EnumSet.noneOf(Thread.State.class);
+        set.addAll(Arrays.asList(states));
+        return new ThreadCapturePolicy(reportingThreadOnly, names, set, maxThreads, maxFrames);
+    }
+
+    /**
+     * Captures at most this many threads, including the reporting thread. Threads with lower
+     * ids are captured first.
+     *
+     * @param maxThreads the maximum number of threads, which must be at least 1
+     * @return the new policy
+     */
+    public ThreadCapturePolicy withMaxThreads(int maxThreads) {
+        if (maxThreads < 1) {
+            throw new IllegalArgumentException("maxThreads must be at least 1");
+        }
+        return new ThreadCapturePolicy(reportingThreadOnly, names, states, maxThreads, maxFrames);
+    }
+
+    /**
+     * Keeps at most this many frames from the top of each stack.
+     *
+     * @param maxFrames the maximum number of frames, which must not be negative
+     * @return the new policy
+     */
+    public ThreadCapturePolicy withMaxFrames(int maxFrames) {
+        if (maxFrames < 0) {
+            throw new IllegalArgumentException("maxFrames must not be negative");
+        }
+        return new ThreadCapturePolicy(reportingThreadOnly, names, states, maxThreads, maxFrames);
+    }
+
+    /**
+     * @return true if threads are selected by name or state
+     */
+    boolean filtersThreads() {
+        return names != null || states != null;
+    }
+
+    boolean isReportingThreadOnly() {
+        return reportingThreadOnly;
+    }
+
+    int getMaxThreads() {
+        return maxThreads;
+    }
+
+    int getMaxFrames() {
+        return maxFrames;
+    }
+
+    /**
+     * @return true if a thread other than the reporting thread should be captured
+     */
+    boolean includes(ThreadInfo info) {
+        return info != null
+                && (names == null || names.matches(info.getThreadName()))
+                && (states == null || states.contains(info.getThreadState()));
+    }
+}
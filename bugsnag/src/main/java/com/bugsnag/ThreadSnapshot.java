@@ -0,0 +1,153 @@
+package com.bugsnag;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The stacks of all live threads at the moment a report was created. Creating a snapshot only
+ * copies references to the stacks along with the id and name of each thread, so that it is
+ * cheap for the thread which is reporting the error. The stacks are turned into
+ * {@link ThreadState}s later, when the report is delivered.
+ */
+final class ThreadSnapshot {
+
+    private static final Comparator<ThreadState> BY_ID = new Comparator<ThreadState>() {
+        @Override
+        public int compare(ThreadState first, ThreadState second) {
+            long firstId = first.getId();
+            long secondId = second.getId();
+            return firstId < secondId ? -1 : (firstId == secondId ? 0 : 1);
+        }
+    };
+
+    private final long[] ids;
+    private final String[] names;
+    private final StackTraceElement[][] stacks;
+    private final long reportingThreadId;
+    private final Throwable exc;
+    private final int maxFrames;
+
+    private ThreadSnapshot(int size, long reportingThreadId, Throwable exc, int maxFrames) {
+        this.ids = new long[size];
+        this.names = new String[size];
+        this.stacks = new StackTraceElement[size][];
+        this.reportingThreadId = reportingThreadId;
+        this.exc = exc;
+        this.maxFrames = maxFrames;
+    }
+
+    /**
+     * Captures the stacks of the threads selected by the policy, through the
+     * {@link ThreadMXBean} so that only the selected stacks are walked, to the policy's frame
+     * limit.
+     *
+     * @param policy        the threads to capture
+     * @param currentThread the thread reporting the error
+     * @param exc           the exception to take the reporting thread's stack from, or null to
+     *                      use its live stack
+     */
+    static ThreadSnapshot capture(ThreadCapturePolicy policy, Thread currentThread,
+                                  Throwable exc) {
+        long reportingThreadId = currentThread.getId();
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        ThreadInfo[] infos = new ThreadInfo[0];
+        if (!policy.isReportingThreadOnly()) {
+            // Select threads by name and state before walking any of their stacks
+            long[] allIds = bean.getAllThreadIds();
+            Arrays.sort(allIds);
+            ThreadInfo[] summaries = policy.filtersThreads() ? bean.getThreadInfo(allIds, 0) : null;
+            long[] selected = new long[Math.min(allIds.length, policy.getMaxThreads() - 1)];
+            int count = 0;
+            for (int index = 0; index < allIds.length && count < selected.length; index++) {
+                if (allIds[index] != reportingThreadId
+                        && (summaries == null || policy.includes(summaries[index]))) {
+                    selected[count++] = allIds[index];
+                }
+            }
+            infos = bean.getThreadInfo(Arrays.copyOf(selected, count), policy.getMaxFrames());
+        }
+
+        int count = 0;
+        for (ThreadInfo info : infos) {
+            count += info != null ? 1 : 0;
+        }
+        ThreadSnapshot snapshot = new ThreadSnapshot(count + 1, reportingThreadId, exc,
+                policy.getMaxFrames());
+        snapshot.add(0, currentThread, exc == null ? currentThread.getStackTrace() : null);
+        int index = 1;
+        for (ThreadInfo info : infos) {
+            if (info != null) {
+                snapshot.ids[index] = info.getThreadId();
+                snapshot.names[index] = info.getThreadName();
+                snapshot.stacks[index++] = info.getStackTrace();
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Captures the stacks of all live threads.
+     *
+     * @param currentThread the thread reporting the error
+     * @param liveThreads   the stacks of all live threads
+     * @param exc           the exception to take the reporting thread's stack from, or null to
+     *                      use its live stack
+     */
+    static ThreadSnapshot fromStacks(Thread currentThread,
+                                     Map<Thread, StackTraceElement[]> liveThreads,
+                                     Throwable exc) {
+        // if thread is not present for any reason, add the current stacktrace
+        // so that the errorReportingThread will always be reported
+        boolean missingCurrentThread = !liveThreads.containsKey(currentThread);
+        int size = liveThreads.size() + (missingCurrentThread ? 1 : 0);
+        ThreadSnapshot snapshot =
+                new ThreadSnapshot(size, currentThread.getId(), exc, Integer.MAX_VALUE);
+
+        int index = 0;
+        for (Map.Entry<Thread, StackTraceElement[]> entry : liveThreads.entrySet()) {
+            snapshot.add(index++, entry.getKey(), entry.getValue());
+        }
+        if (missingCurrentThread) {
+            snapshot.add(index, currentThread,
+                    exc == null ? currentThread.getStackTrace() : null);
+        }
+        return snapshot;
+    }
+
+    private void add(int index, Thread thread, StackTraceElement[] stack) {
+        ids[index] = thread.getId();
+        names[index] = thread.getName();
+        stacks[index] = stack;
+    }
+
+    /**
+     * @return the state of each thread, sorted by thread id
+     */
+    List<ThreadState> toThreadStates(Configuration config) {
+        List<ThreadState> threads = new ArrayList<ThreadState>(ids.length);
+        for (int index = 0; index < ids.length; index++) {
+            boolean reportingThread = ids[index] == reportingThreadId;
+
+            // unhandled errors use the exception trace
+            StackTraceElement[] stack = reportingThread && exc != null
+                    ? exc.getStackTrace() : stacks[index];
+            if (stack.length > maxFrames) {
+                stack = Arrays.copyOf(stack, maxFrames);
+            }
+            ThreadState threadState = new ThreadState(config, ids[index], names[index], stack);
+            if (reportingThread) {
+                threadState.setErrorReportingThread(true);
+            }
+            threads.add(threadState);
+        }
+        Collections.sort(threads, BY_ID);
+        return threads;
+    }
+}
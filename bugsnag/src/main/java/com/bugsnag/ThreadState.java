@@ -1,23 +1,29 @@
 package com.bugsnag;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonGenerator;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Comparator;
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 
 class ThreadState {
 
     private final Configuration config;
-    private final Thread thread;
+    private final long id;
+    private final String name;
     private final StackTraceElement[] stackTraceElements;
     private Boolean errorReportingThread;
 
     ThreadState(Configuration config, Thread thread, StackTraceElement[] stackTraceElements) {
+        this(config, thread.getId(), thread.getName(), stackTraceElements);
+    }
+
+    ThreadState(Configuration config, long id, String name,
+                StackTraceElement[] stackTraceElements) {
         this.config = config;
-        this.thread = thread;
+        this.id = id;
+        this.name = name;
         this.stackTraceElements = stackTraceElements;
     }
 
@@ -25,48 +31,17 @@ class ThreadState {
                                             Thread currentThread,
                                             Map<Thread, StackTraceElement[]> liveThreads,
                                             Throwable exc) {
-        // Get current thread id (the crashing thread) and stacktraces for all live threads
-        long crashingThreadId = currentThread.getId();
-
-        // if thread is not present for any reason, add the current stacktrace to the map
-        // so that the errorReportingThread will always be reported
-        if (!liveThreads.containsKey(currentThread)) {
-            liveThreads.put(currentThread, currentThread.getStackTrace());
-        }
-        if (exc != null) { // unhandled errors use the exception trace
-            liveThreads.put(currentThread, exc.getStackTrace());
-        }
-
-        // Sort threads by thread-id
-        Object[] keys = liveThreads.keySet().toArray();
-        Arrays.sort(keys, new Comparator<Object>() {
-            public int compare(Object first, Object second) {
-                return Long.valueOf(((Thread) first).getId()).compareTo(((Thread) second).getId());
-            }
-        });
-
-        List<ThreadState> threads = new ArrayList<ThreadState>();
-
-        for (Object key : keys) {
-            Thread thread = (Thread) key;
-            ThreadState threadState = new ThreadState(config, thread, liveThreads.get(thread));
-            threads.add(threadState);
-
-            if (threadState.getId() == crashingThreadId) {
-                threadState.setErrorReportingThread(true);
-            }
-        }
-        return threads;
+        return ThreadSnapshot.fromStacks(currentThread, liveThreads, exc).toThreadStates(config);
     }
 
     @JsonProperty("id")
     public long getId() {
-        return thread.getId();
+        return id;
     }
 
     @JsonProperty("name")
     public String getName() {
-        return thread.getName();
+        return name;
     }
 
     @JsonProperty("stacktrace")
@@ -79,6 +54,20 @@ class ThreadState {
         return errorReportingThread;
     }
 
+    void writeJson(JsonGenerator generator, boolean includeStacktrace) throws IOException {
+        generator.writeStartObject();
+        generator.writeNumberField("id", getId());
+        JsonUtils.writeStringField(generator, "name", getName());
+        if (includeStacktrace) {
+            Stackframe.writeStacktraceField(generator, config, stackTraceElements,
+                    Integer.MAX_VALUE);
+        }
+        if (errorReportingThread != null) {
+            generator.writeBooleanField("errorReportingThread", errorReportingThread);
+        }
+        generator.writeEndObject();
+    }
+
     public void setErrorReportingThread(Boolean errorReportingThread) {
         this.errorReportingThread = errorReportingThread;
     }
@@ -0,0 +1,32 @@
+package com.bugsnag;
+
+/**
+ * The ways in which a payload is trimmed to fit the maximum payload size, in the order that
+ * they are applied. Each level also applies the levels before it.
+ */
+enum TrimLevel {
+    NONE(null),
+
+    /** Leave out the stacktraces of threads. */
+    THREAD_STACKS("threadStacks"),
+
+    /** Truncate long strings in the metadata. */
+    METADATA_VALUES("metaDataValues"),
+
+    /** Leave out stackframes beyond the first few of each exception. */
+    STACKFRAMES("stackframes");
+
+    static final int MAX_METADATA_STRING_LENGTH = 1024;
+    static final int MAX_STACKFRAMES = 100;
+
+    private final String name;
+
+    TrimLevel(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -2,6 +2,7 @@ package com.bugsnag.callbacks;
 
 import com.bugsnag.Report;
 import com.bugsnag.servlet.BugsnagServletRequestListener;
+import com.bugsnag.util.FilteredMap;
 
 import java.util.Enumeration;
 import java.util.HashMap;
@@ -39,7 +40,7 @@ public class ServletCallback implements Callback {
                 .addToTab("request", "params",
                         new HashMap<String, String[]>(request.getParameterMap()))
                 .addToTab("request", "clientIp", getClientIp(request))
-                .addToTab("request", "headers", getHeaderMap(request));
+                .addToTab("request", "headers", getHeaderMap(report, request));
 
         // Set default context
         if (report.getContext() == null) {
@@ -60,12 +61,18 @@ public class ServletCallback implements Callback {
         return remoteAddr;
     }
 
-    private Map<String, String> getHeaderMap(HttpServletRequest request) {
+    private Map<String, String> getHeaderMap(Report report, HttpServletRequest request) {
         Map<String, String> headers = new HashMap<String, String>();
         Enumeration<String> headerNames = request.getHeaderNames();
 
         while (headerNames != null && headerNames.hasMoreElements()) {
             String key = headerNames.nextElement();
+
+            // Don't read the values of filtered headers, such as cookies
+            if (report.isFilteredKey(key)) {
+                headers.put(key, FilteredMap.FILTERED_PLACEHOLDER);
+                continue;
+            }
             Enumeration<String> headerValues = request.getHeaders(key);
             StringBuilder value = new StringBuilder();
 
@@ -1,42 +1,73 @@
 package com.bugsnag.delivery;
 
 import com.bugsnag.serialization.Serializer;
+import com.bugsnag.util.VirtualThreads;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.Proxy;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
-public class AsyncHttpDelivery implements HttpDelivery {
+public class AsyncHttpDelivery implements ConfigurableHttpDelivery {
     private static final Logger LOGGER = LoggerFactory.getLogger(AsyncHttpDelivery.class);
     private static final int SHUTDOWN_TIMEOUT = 5000;
 
+    public static final int DEFAULT_WORKER_COUNT = 1;
+    public static final int DEFAULT_QUEUE_CAPACITY = 1000;
+    public static final int DEFAULT_OVERFLOW_TIMEOUT = 100;
+    public static final int DEFAULT_OVERFLOW_SAMPLE_RATE = 10;
+
     private HttpDelivery baseDelivery;
 
+    private volatile int workerCount = DEFAULT_WORKER_COUNT;
+    private volatile OverflowPolicy overflowPolicy = OverflowPolicy.DROP_NEWEST;
+    private volatile int overflowTimeout = DEFAULT_OVERFLOW_TIMEOUT;
+    private volatile int overflowSampleRate = DEFAULT_OVERFLOW_SAMPLE_RATE;
+    private final AtomicLong overflowCount = new AtomicLong();
+    private final Map<OverflowPolicy, AtomicLong> droppedReports =
+            new EnumMap<OverflowPolicy, AtomicLong>(OverflowPolicy.class);
+
+    private volatile boolean useVirtualThreads = false;
+
     private final ThreadFactory threadFactory = new ThreadFactory() {
         @Override
         public Thread newThread(Runnable runnable) {
-            Thread thread = Executors.defaultThreadFactory().newThread(runnable);
+            Thread thread = useVirtualThreads && VirtualThreads.isSupported()
+                    ? VirtualThreads.newThread(runnable)
+                    : Executors.defaultThreadFactory().newThread(runnable);
             thread.setName("bugsnag-async-delivery-" + thread.getId());
             return thread;
         }
     };
-    // Create an exector service which keeps idle threads alive for a maximum of SHUTDOWN_TIMEOUT.
-    // This should avoid blocking an application that doesn't call shutdown from exiting.
-    private ExecutorService executorService =
-            new ThreadPoolExecutor(0, 1,
-                    SHUTDOWN_TIMEOUT, TimeUnit.MILLISECONDS,
-                    new LinkedBlockingQueue<Runnable>(),
-                    threadFactory);
 
-    private boolean shuttingDown = false;
+    private final RejectedExecutionHandler overflowHandler = new RejectedExecutionHandler() {
+        @Override
+        public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+            handleOverflow(runnable, executor);
+        }
+    };
+
+    private volatile ExecutorService executorService =
+            createExecutorService(DEFAULT_QUEUE_CAPACITY);
+
+    // Executors replaced by setQueueCapacity which may still be finishing reports, guarded by this
+    private final List<ExecutorService> previousExecutors = new ArrayList<ExecutorService>();
+
+    private volatile boolean shuttingDown = false;
 
     /**
      * Creates a new instance, which defaults to the https://notify.bugsnag.com endpoint
@@ -49,6 +80,9 @@ public class AsyncHttpDelivery implements HttpDelivery {
      * Creates a new instance, which uses a custom endpoint
      */
     public AsyncHttpDelivery(String endpoint) {
+        for (OverflowPolicy policy : OverflowPolicy.values()) {
+            droppedReports.put(policy, new AtomicLong());
+        }
         baseDelivery = new SyncHttpDelivery(endpoint);
         Runtime.getRuntime().addShutdownHook(new Thread() {
             @Override
@@ -71,6 +105,36 @@ public class AsyncHttpDelivery implements HttpDelivery {
         baseDelivery.setTimeout(timeout);
     }
 
+    /**
+     * Sets the compression of the base delivery, if it supports compression.
+     */
+    public void setCompression(Compression compression) {
+        HttpDelivery delivery = baseDelivery;
+        if (delivery instanceof ConfigurableHttpDelivery) {
+            ((ConfigurableHttpDelivery) delivery).setCompression(compression);
+        }
+    }
+
+    /**
+     * Sets the read timeout of the base delivery, if it supports one.
+     */
+    public void setReadTimeout(int readTimeout) {
+        HttpDelivery delivery = baseDelivery;
+        if (delivery instanceof ConfigurableHttpDelivery) {
+            ((ConfigurableHttpDelivery) delivery).setReadTimeout(readTimeout);
+        }
+    }
+
+    /**
+     * Sets the deadline of the base delivery, if it supports one.
+     */
+    public void setDeadline(int deadline) {
+        HttpDelivery delivery = baseDelivery;
+        if (delivery instanceof ConfigurableHttpDelivery) {
+            ((ConfigurableHttpDelivery) delivery).setDeadline(deadline);
+        }
+    }
+
     public void setBaseDelivery(HttpDelivery baseDelivery) {
         this.baseDelivery = baseDelivery;
     }
@@ -79,6 +143,135 @@ public class AsyncHttpDelivery implements HttpDelivery {
         this.executorService = executorService;
     }
 
+    /**
+     * Set the number of threads which deliver reports concurrently. Each thread keeps its
+     * connection to the endpoint alive between reports, so increasing this allows delivery to
+     * keep up with a higher rate of errors.
+     *
+     * <p>This has no effect on an executor service set using
+     * {@link #setExecutorService(ExecutorService)}.
+     *
+     * @param workerCount the maximum number of delivery threads
+     */
+    public void setWorkerCount(int workerCount) {
+        if (workerCount <= 0) {
+            throw new IllegalArgumentException("Worker count must be greater than zero");
+        }
+        this.workerCount = workerCount;
+
+        if (executorService instanceof ThreadPoolExecutor) {
+            ThreadPoolExecutor executor = (ThreadPoolExecutor) executorService;
+            if (workerCount > executor.getMaximumPoolSize()) {
+                executor.setMaximumPoolSize(workerCount);
+                executor.setCorePoolSize(workerCount);
+            } else {
+                executor.setCorePoolSize(workerCount);
+                executor.setMaximumPoolSize(workerCount);
+            }
+        }
+    }
+
+    /**
+     * Set whether reports are delivered on virtual threads, when running on Java 21 or later.
+     * Virtual threads make it cheap to use a large worker count, as a thread blocked waiting
+     * for the endpoint doesn't tie up a platform thread. This applies to worker threads
+     * started after it is set. Worker threads which are already running keep delivering
+     * reports until none arrive for 5 seconds, and are then replaced as they are needed.
+     *
+     * <p>This has no effect on an executor service set using
+     * {@link #setExecutorService(ExecutorService)}.
+     *
+     * @param useVirtualThreads true to deliver reports on virtual threads
+     * @see VirtualThreads#isSupported()
+     */
+    public void setUseVirtualThreads(boolean useVirtualThreads) {
+        this.useVirtualThreads = useVirtualThreads;
+    }
+
+    /**
+     * Set the maximum number of reports which can be waiting for delivery. Reports which arrive
+     * while the queue is full are handled according to the {@link OverflowPolicy}.
+     *
+     * <p>Reports which are already queued are moved to the new queue, subject to the overflow
+     * policy if they don't fit. Reports which are being delivered are finished by the previous
+     * workers. This replaces any executor service set using
+     * {@link #setExecutorService(ExecutorService)}.
+     *
+     * @param queueCapacity the maximum number of queued reports
+     */
+    public synchronized void setQueueCapacity(int queueCapacity) {
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("Queue capacity must be greater than zero");
+        }
+        ExecutorService previous = executorService;
+        executorService = createExecutorService(queueCapacity);
+        previous.shutdown();
+        Iterator<ExecutorService> it = previousExecutors.iterator();
+        while (it.hasNext()) {
+            if (it.next().isTerminated()) {
+                it.remove();
+            }
+        }
+        previousExecutors.add(previous);
+
+        if (previous instanceof ThreadPoolExecutor) {
+            List<Runnable> queued = new ArrayList<Runnable>();
+            ((ThreadPoolExecutor) previous).getQueue().drainTo(queued);
+            for (Runnable runnable : queued) {
+                executorService.execute(runnable);
+            }
+        }
+    }
+
+    /**
+     * Set what happens to a report when the delivery queue is full.
+     *
+     * @param overflowPolicy the policy to use, defaults to {@link OverflowPolicy#DROP_NEWEST}
+     */
+    public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+        if (overflowPolicy == null) {
+            throw new NullPointerException("Overflow policy cannot be null");
+        }
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * Set the maximum time (in ms) to wait for space in the delivery queue when using
+     * {@link OverflowPolicy#BLOCK_WITH_TIMEOUT}.
+     *
+     * @param overflowTimeout the maximum time to wait (in ms)
+     */
+    public void setOverflowTimeout(int overflowTimeout) {
+        if (overflowTimeout < 0) {
+            throw new IllegalArgumentException("Overflow timeout cannot be negative");
+        }
+        this.overflowTimeout = overflowTimeout;
+    }
+
+    /**
+     * Set how many reports which could not be queued are received for every one kept when
+     * using {@link OverflowPolicy#SAMPLE}.
+     *
+     * @param overflowSampleRate keep one in every {@code overflowSampleRate} reports
+     */
+    public void setOverflowSampleRate(int overflowSampleRate) {
+        if (overflowSampleRate <= 0) {
+            throw new IllegalArgumentException("Sample rate must be greater than zero");
+        }
+        this.overflowSampleRate = overflowSampleRate;
+    }
+
+    /**
+     * Get the number of reports discarded by the given overflow policy because the delivery
+     * queue was full.
+     *
+     * @param overflowPolicy the policy which discarded the reports
+     * @return the number of discarded reports
+     */
+    public long getDroppedReportCount(OverflowPolicy overflowPolicy) {
+        return droppedReports.get(overflowPolicy).get();
+    }
+
     @Override
     public void deliver(final Serializer serializer,
                         final Object object,
@@ -101,18 +294,98 @@ public class AsyncHttpDelivery implements HttpDelivery {
         shutdown();
     }
 
+    // Create an exector service which keeps idle threads alive for a maximum of SHUTDOWN_TIMEOUT.
+    // This should avoid blocking an application that doesn't call shutdown from exiting.
+    // Core threads are used so that a new worker is started for each report until workerCount
+    // is reached, rather than only once the queue is full.
+    private ExecutorService createExecutorService(int queueCapacity) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(workerCount, workerCount,
+                SHUTDOWN_TIMEOUT, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(queueCapacity),
+                threadFactory,
+                overflowHandler);
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private void handleOverflow(Runnable runnable, ThreadPoolExecutor executor) {
+        // A report submitted while the queue capacity was changed goes to the new executor
+        ExecutorService current = executorService;
+        if (executor.isShutdown() && current != executor && !shuttingDown) {
+            current.execute(runnable);
+            return;
+        }
+        if (executor.isShutdown()) {
+            LOGGER.warn("Not notifying - 'sending' threads are already shutting down");
+            return;
+        }
+
+        // Never wait on the caller's thread unless configured to, and then only for a bounded
+        // time, so a backlog of reports can't stall the application
+        OverflowPolicy policy = overflowPolicy;
+        BlockingQueue<Runnable> queue = executor.getQueue();
+        Runnable evicted = null;
+        boolean queued = false;
+
+        switch (policy) {
+            case DROP_OLDEST:
+                evicted = queue.poll();
+                queued = queue.offer(runnable);
+                break;
+            case SAMPLE:
+                if (overflowCount.incrementAndGet() % overflowSampleRate == 0) {
+                    evicted = queue.poll();
+                    queued = queue.offer(runnable);
+                }
+                break;
+            case BLOCK_WITH_TIMEOUT:
+                try {
+                    queued = queue.offer(runnable, overflowTimeout, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                break;
+            case DROP_NEWEST:
+            default:
+                break;
+        }
+
+        if (evicted != null) {
+            recordDroppedReport(policy);
+        }
+        if (!queued) {
+            recordDroppedReport(policy);
+        }
+    }
+
+    private void recordDroppedReport(OverflowPolicy policy) {
+        droppedReports.get(policy).incrementAndGet();
+        LOGGER.debug("Error not reported to Bugsnag - delivery queue is full ({})", policy);
+    }
+
     private void shutdown() {
         shuttingDown = true;
-        executorService.shutdown();
+        List<ExecutorService> executors;
+        synchronized (this) {
+            executors = new ArrayList<ExecutorService>(previousExecutors);
+        }
+        executors.add(executorService);
+        for (ExecutorService executor : executors) {
+            shutdown(executor);
+        }
+    }
+
+    private void shutdown(ExecutorService executor) {
+        executor.shutdown();
 
         try {
-            if (!executorService.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.MILLISECONDS)) {
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.MILLISECONDS)) {
                 LOGGER.warn("Shutdown of 'sending' threads took too long - forcing a shutdown");
-                executorService.shutdownNow();
+                executor.shutdownNow();
             }
         } catch (InterruptedException ex) {
             LOGGER.warn("Shutdown of 'sending' threads was interrupted - forcing a shutdown");
-            executorService.shutdownNow();
+            executor.shutdownNow();
         }
     }
 }
@@ -0,0 +1,258 @@
+package com.bugsnag.delivery;
+
+import com.bugsnag.serialization.Serializer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stops sending payloads to an endpoint which is failing, so that a slow or unavailable
+ * server doesn't hold up every delivery until it times out.
+ *
+ * <p>The circuit for an endpoint opens after a number of consecutive payloads could not be
+ * delivered (see {@link DeliveryResult.Status#UNDELIVERED}). While it is open, payloads are
+ * passed to the fallback delivery, or discarded if there is no fallback. Once the circuit has
+ * been open for a while it becomes half-open, and the next payload is sent as a trial: the
+ * circuit closes again if it is delivered, and re-opens if not.
+ *
+ * <p>The base delivery must report the result of each payload, so it is typically a {@link
+ * SyncHttpDelivery} or a {@link HttpClientDelivery}.
+ */
+public class CircuitBreakerDelivery extends ForwardingHttpDelivery implements ResultDelivery {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CircuitBreakerDelivery.class);
+
+    public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+    public static final int DEFAULT_OPEN_MS = 30000;
+
+    /**
+     * The state of the circuit for an endpoint.
+     */
+    public enum State {
+
+        /**
+         * Payloads are sent to the endpoint.
+         */
+        CLOSED,
+
+        /**
+         * Payloads are passed to the fallback delivery.
+         */
+        OPEN,
+
+        /**
+         * The next payload is sent to the endpoint as a trial, and the rest are passed to the
+         * fallback delivery until it completes.
+         */
+        HALF_OPEN
+    }
+
+    private final Delivery fallbackDelivery;
+    private final ConcurrentMap<String, Circuit> circuits =
+            new ConcurrentHashMap<String, Circuit>();
+
+    private volatile String endpoint = "";
+    private volatile int failureThreshold = DEFAULT_FAILURE_THRESHOLD;
+    private volatile int openMs = DEFAULT_OPEN_MS;
+    private final AtomicLong divertedReports = new AtomicLong();
+    private final AtomicLong droppedReports = new AtomicLong();
+
+    /**
+     * Creates a new instance, which discards payloads while the circuit is open
+     *
+     * @param baseDelivery the delivery to send payloads with, which reports whether they
+     *                     were delivered
+     */
+    public CircuitBreakerDelivery(ResultDelivery baseDelivery) {
+        this(baseDelivery, null);
+    }
+
+    /**
+     * Creates a new instance, which passes payloads to a fallback delivery while the circuit
+     * is open, such as an {@link OutputStreamDelivery} or a {@link SpoolingDelivery}
+     *
+     * @param baseDelivery     the delivery to send payloads with, which reports whether
+     *                         they were delivered
+     * @param fallbackDelivery the delivery to use while the circuit is open, or null to
+     *                         discard payloads
+     */
+    public CircuitBreakerDelivery(ResultDelivery baseDelivery, Delivery fallbackDelivery) {
+        super(baseDelivery);
+        this.fallbackDelivery = fallbackDelivery;
+    }
+
+    /**
+     * Set the number of consecutive payloads which can fail to be delivered before the
+     * circuit opens.
+     *
+     * @param failureThreshold the number of consecutive failures
+     */
+    public void setFailureThreshold(int failureThreshold) {
+        if (failureThreshold <= 0) {
+            throw new IllegalArgumentException("Failure threshold must be greater than zero");
+        }
+        this.failureThreshold = failureThreshold;
+    }
+
+    /**
+     * Set how long the circuit stays open before a trial payload is sent.
+     *
+     * @param openMs the time to wait before sending a trial payload (in ms)
+     */
+    public void setOpenMs(int openMs) {
+        this.openMs = openMs;
+    }
+
+    /**
+     * @return the state of the circuit for the current endpoint
+     */
+    public State getState() {
+        Circuit circuit = circuits.get(endpoint);
+        return circuit == null ? State.CLOSED : circuit.getState();
+    }
+
+    /**
+     * @return the number of payloads passed to the fallback delivery
+     */
+    public long getDivertedReportCount() {
+        return divertedReports.get();
+    }
+
+    /**
+     * @return the number of payloads discarded because the circuit was open and there is no
+     *         fallback delivery
+     */
+    public long getDroppedReportCount() {
+        return droppedReports.get();
+    }
+
+    @Override
+    public void setEndpoint(String endpoint) {
+        this.endpoint = endpoint == null ? "" : endpoint;
+        super.setEndpoint(endpoint);
+    }
+
+    @Override
+    public void deliver(Serializer serializer, Object object, Map<String, String> headers) {
+        deliverWithResult(serializer, object, headers);
+    }
+
+    @Override
+    public DeliveryResult deliverWithResult(Serializer serializer,
+                                            Object object,
+                                            Map<String, String> headers) {
+        Circuit circuit = getCircuit(endpoint);
+        if (!circuit.allowRequest()) {
+            return divert(serializer, object, headers);
+        }
+
+        boolean delivered = false;
+        try {
+            DeliveryResult result = ((ResultDelivery) baseDelivery).deliverWithResult(
+                    serializer, object, headers);
+            delivered = result.getStatus() != DeliveryResult.Status.UNDELIVERED;
+            return result;
+        } finally {
+            // also ends a half-open trial if the base delivery throws
+            circuit.recordResult(delivered);
+        }
+    }
+
+    private DeliveryResult divert(Serializer serializer,
+                                  Object object,
+                                  Map<String, String> headers) {
+        if (fallbackDelivery != null) {
+            divertedReports.incrementAndGet();
+            return DeliveryUtils.deliver(fallbackDelivery, serializer, object, headers);
+        }
+        droppedReports.incrementAndGet();
+        LOGGER.debug("Circuit open for {}, dropped report", endpoint);
+        return DeliveryResult.fromError(DeliveryResult.Status.UNDELIVERED, null);
+    }
+
+    private Circuit getCircuit(String endpoint) {
+        Circuit circuit = circuits.get(endpoint);
+        if (circuit == null) {
+            Circuit created = new Circuit(endpoint);
+            circuit = circuits.putIfAbsent(endpoint, created);
+            if (circuit == null) {
+                circuit = created;
+            }
+        }
+        return circuit;
+    }
+
+    @Override
+    public void close() {
+        baseDelivery.close();
+        if (fallbackDelivery != null) {
+            fallbackDelivery.close();
+        }
+    }
+
+    private class Circuit {
+        private final String endpoint;
+        private State state = State.CLOSED;
+        private int consecutiveFailures;
+        private long openedAt;
+        private boolean trialInProgress;
+
+        Circuit(String endpoint) {
+            this.endpoint = endpoint;
+        }
+
+        synchronized State getState() {
+            return state;
+        }
+
+        synchronized boolean allowRequest() {
+            switch (state) {
+                case OPEN:
+                    if (System.nanoTime() - openedAt < TimeUnit.MILLISECONDS.toNanos(openMs)) {
+                        return false;
+                    }
+                    state = State.HALF_OPEN;
+                    trialInProgress = true;
+                    return true;
+                case HALF_OPEN:
+                    // Only one trial payload is sent at a time
+                    if (trialInProgress) {
+                        return false;
+                    }
+                    trialInProgress = true;
+                    return true;
+                case CLOSED:
+                default:
+                    return true;
+            }
+        }
+
+        synchronized void recordResult(boolean success) {
+            if (success) {
+                if (state != State.CLOSED) {
+                    LOGGER.info("Circuit closed for {}", endpoint);
+                }
+                state = State.CLOSED;
+                consecutiveFailures = 0;
+                trialInProgress = false;
+                return;
+            }
+
+            consecutiveFailures++;
+            if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+                if (state != State.OPEN) {
+                    LOGGER.warn("Circuit opened for {} after {} failed deliveries",
+                            endpoint, consecutiveFailures);
+                }
+                state = State.OPEN;
+                openedAt = System.nanoTime();
+                trialInProgress = false;
+            }
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.bugsnag.delivery;
+
+/**
+ * The encoding used to compress request bodies sent by an {@link HttpDelivery}.
+ */
+public enum Compression {
+
+    /**
+     * Send request bodies uncompressed.
+     */
+    NONE(null),
+
+    /**
+     * Compress request bodies in the gzip format.
+     */
+    GZIP("gzip"),
+
+    /**
+     * Compress request bodies in the zlib format.
+     */
+    DEFLATE("deflate");
+
+    private final String contentEncoding;
+
+    Compression(String contentEncoding) {
+        this.contentEncoding = contentEncoding;
+    }
+
+    /**
+     * @return the value of the Content-Encoding header, or null if uncompressed
+     */
+    public String getContentEncoding() {
+        return contentEncoding;
+    }
+}
@@ -0,0 +1,29 @@
+package com.bugsnag.delivery;
+
+/**
+ * An {@link HttpDelivery} which supports further settings for its requests. These are kept
+ * out of {@link HttpDelivery} so that existing implementations of it still work, and are only
+ * applied by {@link com.bugsnag.Bugsnag} to deliveries which implement this interface.
+ */
+public interface ConfigurableHttpDelivery extends HttpDelivery {
+    /**
+     * The time to wait for a response once connected.
+     *
+     * @param readTimeout the read timeout for a delivery attempt.
+     */
+    void setReadTimeout(int readTimeout);
+
+    /**
+     * The maximum total time a delivery attempt may take, after which it is aborted.
+     *
+     * @param deadline the deadline for a delivery attempt, or 0 for no deadline.
+     */
+    void setDeadline(int deadline);
+
+    /**
+     * The compression to use for request bodies.
+     *
+     * @param compression the encoding used to compress requests.
+     */
+    void setCompression(Compression compression);
+}
@@ -0,0 +1,59 @@
+package com.bugsnag.delivery;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The pending result of a payload being delivered in the background. Delivery can't be
+ * cancelled once it has started.
+ */
+class DeliveryFuture implements Future<DeliveryResult> {
+    private final CountDownLatch done = new CountDownLatch(1);
+    private volatile DeliveryResult result;
+
+    static DeliveryFuture completed(DeliveryResult result) {
+        DeliveryFuture future = new DeliveryFuture();
+        future.complete(result);
+        return future;
+    }
+
+    synchronized void complete(DeliveryResult result) {
+        if (this.result == null) {
+            this.result = result;
+            done.countDown();
+        }
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return false;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return false;
+    }
+
+    @Override
+    public boolean isDone() {
+        return result != null;
+    }
+
+    @Override
+    public DeliveryResult get() throws InterruptedException, ExecutionException {
+        done.await();
+        return result;
+    }
+
+    @Override
+    public DeliveryResult get(long timeout, TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        if (!done.await(timeout, unit)) {
+            throw new TimeoutException();
+        }
+        return result;
+    }
+}
@@ -0,0 +1,119 @@
+package com.bugsnag.delivery;
+
+/**
+ * The outcome of an attempt to deliver a payload.
+ */
+public final class DeliveryResult {
+
+    /**
+     * Whether a payload was delivered, and if not whether it is worth trying again.
+     */
+    public enum Status {
+
+        /**
+         * The payload was accepted.
+         */
+        DELIVERED,
+
+        /**
+         * The payload was not delivered, but might be if it is sent again later, for example
+         * because of a network error or a server error response.
+         */
+        UNDELIVERED,
+
+        /**
+         * The payload can never be delivered, for example because it could not be serialized
+         * or was rejected by the server.
+         */
+        FAILURE
+    }
+
+    private static final DeliveryResult DELIVERED =
+            new DeliveryResult(Status.DELIVERED, 0, 0, null);
+
+    private final Status status;
+    private final int responseCode;
+    private final long retryAfterMs;
+    private final Throwable error;
+
+    private DeliveryResult(Status status, int responseCode, long retryAfterMs, Throwable error) {
+        this.status = status;
+        this.responseCode = responseCode;
+        this.retryAfterMs = retryAfterMs;
+        this.error = error;
+    }
+
+    /**
+     * @return a result for a payload which was delivered without a response code.
+     */
+    public static DeliveryResult delivered() {
+        return DELIVERED;
+    }
+
+    /**
+     * Creates a result from an HTTP response code.
+     *
+     * @param responseCode the response code returned by the server
+     * @return the result of the delivery
+     */
+    public static DeliveryResult fromResponseCode(int responseCode) {
+        return fromResponseCode(responseCode, 0);
+    }
+
+    /**
+     * Creates a result from an HTTP response code and the delay requested by the server's
+     * Retry-After header.
+     *
+     * @param responseCode the response code returned by the server
+     * @param retryAfterMs how long the server asked clients to wait before retrying (in ms)
+     * @return the result of the delivery
+     */
+    public static DeliveryResult fromResponseCode(int responseCode, long retryAfterMs) {
+        Status status;
+        if (responseCode / 100 == 2) {
+            status = Status.DELIVERED;
+        } else if (responseCode / 100 == 5 || responseCode == 408 || responseCode == 429) {
+            status = Status.UNDELIVERED;
+        } else {
+            status = Status.FAILURE;
+        }
+        return new DeliveryResult(status, responseCode, retryAfterMs, null);
+    }
+
+    /**
+     * Creates a result for a payload which was not delivered because of an error.
+     *
+     * @param status the status of the delivery
+     * @param error  the error which prevented delivery
+     * @return the result of the delivery
+     */
+    public static DeliveryResult fromError(Status status, Throwable error) {
+        return new DeliveryResult(status, 0, 0, error);
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * @return the HTTP response code, or 0 if no response was received.
+     */
+    public int getResponseCode() {
+        return responseCode;
+    }
+
+    /**
+     * @return how long the server asked clients to wait before retrying (in ms), or 0 if it
+     *         didn't say.
+     */
+    public long getRetryAfterMs() {
+        return retryAfterMs;
+    }
+
+    /**
+     * @return the error which prevented delivery, if any.
+     */
+    public Throwable getError() {
+        return error;
+    }
+}
@@ -0,0 +1,23 @@
+package com.bugsnag.delivery;
+
+import com.bugsnag.serialization.Serializer;
+
+import java.util.Map;
+
+class DeliveryUtils {
+
+    /**
+     * Delivers the object, reporting the result if the delivery supports it. Any other delivery
+     * is assumed to have succeeded.
+     */
+    static DeliveryResult deliver(Delivery delivery,
+                                  Serializer serializer,
+                                  Object object,
+                                  Map<String, String> headers) {
+        if (delivery instanceof ResultDelivery) {
+            return ((ResultDelivery) delivery).deliverWithResult(serializer, object, headers);
+        }
+        delivery.deliver(serializer, object, headers);
+        return DeliveryResult.delivered();
+    }
+}
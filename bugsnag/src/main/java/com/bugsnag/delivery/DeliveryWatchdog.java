@@ -0,0 +1,59 @@
+package com.bugsnag.delivery;
+
+import com.bugsnag.util.IdleExecutors;
+
+import java.net.HttpURLConnection;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Aborts HTTP requests which are still running after their deadline, by disconnecting them
+ * from a timer thread shared by all deliveries. Disconnecting closes the socket, which makes
+ * any read or write blocked on it fail.
+ */
+class DeliveryWatchdog {
+    private static final int KEEP_ALIVE_MS = 5000;
+
+    private static final ScheduledThreadPoolExecutor TIMER =
+            IdleExecutors.newScheduledExecutor("bugsnag-delivery-watchdog-", KEEP_ALIVE_MS);
+
+    private final ScheduledFuture<?> future;
+    private volatile boolean aborted;
+
+    private DeliveryWatchdog(final HttpURLConnection connection, int deadline) {
+        future = TIMER.schedule(new Runnable() {
+            @Override
+            public void run() {
+                aborted = true;
+                connection.disconnect();
+            }
+        }, deadline, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Starts watching a request.
+     *
+     * @return the watchdog, or null if there is no deadline
+     */
+    static DeliveryWatchdog watch(HttpURLConnection connection, int deadline) {
+        return deadline > 0 ? new DeliveryWatchdog(connection, deadline) : null;
+    }
+
+    /**
+     * Stops watching the request, once it has completed.
+     */
+    void cancel() {
+        // Almost every request completes in time, so remove the deadline from the queue now
+        // rather than leaving it there until it expires
+        future.cancel(false);
+        TIMER.remove((Runnable) future);
+    }
+
+    /**
+     * @return true if the request was aborted because it passed its deadline
+     */
+    boolean isAborted() {
+        return aborted;
+    }
+}
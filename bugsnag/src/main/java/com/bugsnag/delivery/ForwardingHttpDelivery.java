@@ -0,0 +1,63 @@
+package com.bugsnag.delivery;
+
+import java.net.Proxy;
+
+/**
+ * A delivery which adds behaviour around a base delivery, such as batching or retrying
+ * payloads. HTTP settings are forwarded to the base delivery when it supports them.
+ */
+public abstract class ForwardingHttpDelivery implements ConfigurableHttpDelivery {
+
+    protected final Delivery baseDelivery;
+
+    /**
+     * Creates a new instance, which forwards settings to the given delivery
+     *
+     * @param baseDelivery the delivery to send payloads with
+     */
+    protected ForwardingHttpDelivery(Delivery baseDelivery) {
+        this.baseDelivery = baseDelivery;
+    }
+
+    @Override
+    public void setEndpoint(String endpoint) {
+        if (baseDelivery instanceof HttpDelivery) {
+            ((HttpDelivery) baseDelivery).setEndpoint(endpoint);
+        }
+    }
+
+    @Override
+    public void setTimeout(int timeout) {
+        if (baseDelivery instanceof HttpDelivery) {
+            ((HttpDelivery) baseDelivery).setTimeout(timeout);
+        }
+    }
+
+    @Override
+    public void setReadTimeout(int readTimeout) {
+        if (baseDelivery instanceof ConfigurableHttpDelivery) {
+            ((ConfigurableHttpDelivery) baseDelivery).setReadTimeout(readTimeout);
+        }
+    }
+
+    @Override
+    public void setDeadline(int deadline) {
+        if (baseDelivery instanceof ConfigurableHttpDelivery) {
+            ((ConfigurableHttpDelivery) baseDelivery).setDeadline(deadline);
+        }
+    }
+
+    @Override
+    public void setProxy(Proxy proxy) {
+        if (baseDelivery instanceof HttpDelivery) {
+            ((HttpDelivery) baseDelivery).setProxy(proxy);
+        }
+    }
+
+    @Override
+    public void setCompression(Compression compression) {
+        if (baseDelivery instanceof ConfigurableHttpDelivery) {
+            ((ConfigurableHttpDelivery) baseDelivery).setCompression(compression);
+        }
+    }
+}
@@ -0,0 +1,371 @@
+package com.bugsnag.delivery;
+
+import com.bugsnag.serialization.SerializationException;
+import com.bugsnag.serialization.Serializer;
+import com.bugsnag.util.IdleExecutors;
+import com.bugsnag.util.PooledByteArrayOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Proxy;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Delivers payloads with the non-blocking HTTP client in Java 11 and later, which keeps many
+ * requests in flight on a few threads rather than blocking a thread for each one. It can be
+ * used in place of {@link AsyncHttpDelivery}:
+ *
+ * <pre>
+ * if (HttpClientDelivery.isSupported()) {
+ *     bugsnag.setDelivery(new HttpClientDelivery());
+ * }
+ * </pre>
+ *
+ * <p>Payloads are serialized on the calling thread and sent in the background. Use {@link
+ * #deliverAsync} to find out whether a payload was delivered. When the maximum number of
+ * requests are already in flight, further payloads are discarded.
+ *
+ * <p>The HTTP client doesn't support SOCKS proxies, so while one is set, payloads are sent
+ * with a {@link SyncHttpDelivery} on the background threads instead.
+ */
+public class HttpClientDelivery implements ConfigurableHttpDelivery, ResultDelivery {
+    private static final Logger LOGGER = LoggerFactory.getLogger(HttpClientDelivery.class);
+    private static final int SHUTDOWN_TIMEOUT = 5000;
+
+    public static final int DEFAULT_MAX_IN_FLIGHT = 64;
+    public static final int DEFAULT_THREAD_COUNT = 2;
+
+    private volatile String endpoint;
+    private volatile int timeout = SyncHttpDelivery.DEFAULT_TIMEOUT;
+    private volatile int readTimeout = SyncHttpDelivery.DEFAULT_READ_TIMEOUT;
+    private volatile int deadline = SyncHttpDelivery.DEFAULT_DEADLINE;
+    private volatile Proxy proxy;
+    private volatile Compression compression = Compression.NONE;
+    private volatile int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+
+    private volatile ParsedUri parsedUri;
+    private volatile JavaHttpClient client;
+    private volatile boolean useFallback = false;
+    private final SyncHttpDelivery fallbackDelivery;
+    private volatile boolean shuttingDown = false;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong droppedReports = new AtomicLong();
+
+    private final ThreadPoolExecutor executor = IdleExecutors.newFixedExecutor(
+            "bugsnag-http-client-delivery-", DEFAULT_THREAD_COUNT, SHUTDOWN_TIMEOUT);
+
+    /**
+     * Creates a new instance, which defaults to the https://notify.bugsnag.com endpoint
+     */
+    public HttpClientDelivery() {
+        this(SyncHttpDelivery.DEFAULT_NOTIFY_ENDPOINT);
+    }
+
+    /**
+     * Creates a new instance, which uses a custom endpoint
+     *
+     * @param endpoint the endpoint to deliver to
+     * @throws UnsupportedOperationException if the HTTP client is not available
+     */
+    public HttpClientDelivery(String endpoint) {
+        if (!isSupported()) {
+            throw new UnsupportedOperationException(
+                    "HttpClientDelivery requires java.net.http, available in Java 11 or later");
+        }
+        this.endpoint = endpoint;
+        this.fallbackDelivery = new SyncHttpDelivery(endpoint);
+    }
+
+    /**
+     * @return true if the HTTP client is available in this version of Java
+     */
+    public static boolean isSupported() {
+        return JavaHttpClient.isAvailable();
+    }
+
+    @Override
+    public void setEndpoint(String endpoint) {
+        this.endpoint = endpoint;
+        fallbackDelivery.setEndpoint(endpoint);
+    }
+
+    @Override
+    public void setTimeout(int timeout) {
+        this.timeout = timeout;
+        this.client = null;
+        fallbackDelivery.setTimeout(timeout);
+    }
+
+    @Override
+    public void setReadTimeout(int readTimeout) {
+        this.readTimeout = readTimeout;
+        fallbackDelivery.setReadTimeout(readTimeout);
+    }
+
+    @Override
+    public void setDeadline(int deadline) {
+        this.deadline = deadline;
+        fallbackDelivery.setDeadline(deadline);
+    }
+
+    @Override
+    public void setProxy(Proxy proxy) {
+        fallbackDelivery.setProxy(proxy);
+        this.proxy = proxy;
+        this.client = null;
+        this.useFallback = !JavaHttpClient.supportsProxy(proxy);
+        if (useFallback) {
+            LOGGER.warn("The HTTP client doesn't support {} proxies, "
+                    + "sending payloads with HttpURLConnection instead", proxy.type());
+        }
+    }
+
+    @Override
+    public void setCompression(Compression compression) {
+        this.compression = compression == null ? Compression.NONE : compression;
+        fallbackDelivery.setCompression(compression);
+    }
+
+    /**
+     * Set the maximum number of requests which can be in flight at once.
+     *
+     * @param maxInFlight the maximum number of concurrent requests
+     */
+    public void setMaxInFlight(int maxInFlight) {
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("Max in flight must be greater than zero");
+        }
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * @return the number of payloads discarded because too many requests were in flight, or
+     *         the delivery was closed
+     */
+    public long getDroppedReportCount() {
+        return droppedReports.get();
+    }
+
+    @Override
+    public void deliver(Serializer serializer, Object object, Map<String, String> headers) {
+        deliverAsync(serializer, object, headers);
+    }
+
+    @Override
+    public DeliveryResult deliverWithResult(Serializer serializer,
+                                            Object object,
+                                            Map<String, String> headers) {
+        try {
+            return deliverAsync(serializer, object, headers).get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return DeliveryResult.fromError(DeliveryResult.Status.UNDELIVERED, ex);
+        } catch (ExecutionException ex) {
+            return DeliveryResult.fromError(DeliveryResult.Status.UNDELIVERED, ex.getCause());
+        }
+    }
+
+    /**
+     * Sends the object without waiting for the response.
+     *
+     * @param serializer the serializer to use.
+     * @param object     the object to deliver.
+     * @param headers    HTTP headers which must be appended to the request.
+     * @return the result of the delivery, which completes once the response is received.
+     */
+    public Future<DeliveryResult> deliverAsync(Serializer serializer,
+                                               Object object,
+                                               Map<String, String> headers) {
+        String endpoint = this.endpoint;
+        if (endpoint == null) {
+            LOGGER.warn("Endpoint configured incorrectly, skipping delivery.");
+            return DeliveryFuture.completed(
+                    DeliveryResult.fromError(DeliveryResult.Status.FAILURE, null));
+        }
+
+        if (shuttingDown) {
+            LOGGER.debug("Delivery is shutting down, dropped report");
+            return dropReport();
+        }
+        if (inFlight.incrementAndGet() > maxInFlight) {
+            inFlight.decrementAndGet();
+            LOGGER.debug("Too many requests in flight, dropped report");
+            return dropReport();
+        }
+
+        final DeliveryFuture future = new DeliveryFuture();
+        if (useFallback) {
+            deliverWithFallback(future, serializer, object, headers);
+            return future;
+        }
+        try {
+            Compression compression = this.compression;
+            Map<String, String> requestHeaders = new LinkedHashMap<String, String>();
+            requestHeaders.put("Content-Type", serializer.getContentType());
+            if (compression.getContentEncoding() != null) {
+                requestHeaders.put("Content-Encoding", compression.getContentEncoding());
+            }
+            requestHeaders.putAll(headers);
+
+            URI uri = getUri(endpoint);
+            getClient().post(uri, requestHeaders, serialize(serializer, object, compression),
+                    deadline > 0 ? deadline : readTimeout, new JavaHttpClient.Callback() {
+                        @Override
+                        public void onResponse(int status, String retryAfter) {
+                            if (status / 100 != 2) {
+                                LOGGER.warn("Error not reported to Bugsnag - "
+                                        + "got non-200 response code: {}", status);
+                            }
+                            complete(future, DeliveryResult.fromResponseCode(status,
+                                    SyncHttpDelivery.parseRetryAfter(retryAfter)));
+                        }
+
+                        @Override
+                        public void onFailure(Throwable error) {
+                            LOGGER.warn("Error not reported to Bugsnag - "
+                                    + "exception when making request", error);
+                            complete(future, DeliveryResult.fromError(
+                                    DeliveryResult.Status.UNDELIVERED, error));
+                        }
+                    });
+        } catch (URISyntaxException ex) {
+            LOGGER.warn("Error not reported to Bugsnag - malformed URL."
+                    + " Have you set both endpoints correctly?", ex);
+            complete(future, DeliveryResult.fromError(DeliveryResult.Status.FAILURE, ex));
+        } catch (SerializationException ex) {
+            LOGGER.warn("Error not reported to Bugsnag - exception when serializing payload", ex);
+            complete(future, DeliveryResult.fromError(DeliveryResult.Status.FAILURE, ex));
+        } catch (IOException ex) {
+            LOGGER.warn("Error not reported to Bugsnag - exception when serializing payload", ex);
+            complete(future, DeliveryResult.fromError(DeliveryResult.Status.FAILURE, ex));
+        } catch (RuntimeException ex) {
+            // The client rejects invalid requests, such as restricted headers
+            LOGGER.warn("Error not reported to Bugsnag - exception when making request", ex);
+            complete(future, DeliveryResult.fromError(DeliveryResult.Status.FAILURE, ex));
+        }
+        return future;
+    }
+
+    private void deliverWithFallback(final DeliveryFuture future,
+                                     final Serializer serializer,
+                                     final Object object,
+                                     final Map<String, String> headers) {
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    DeliveryResult result = DeliveryResult.fromError(
+                            DeliveryResult.Status.UNDELIVERED, null);
+                    try {
+                        result = fallbackDelivery.deliverWithResult(serializer, object, headers);
+                    } finally {
+                        complete(future, result);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            // The delivery was closed since it was checked
+            LOGGER.debug("Delivery is shutting down, dropped report");
+            droppedReports.incrementAndGet();
+            complete(future, DeliveryResult.fromError(DeliveryResult.Status.UNDELIVERED, ex));
+        }
+    }
+
+    private Future<DeliveryResult> dropReport() {
+        droppedReports.incrementAndGet();
+        return DeliveryFuture.completed(
+                DeliveryResult.fromError(DeliveryResult.Status.UNDELIVERED, null));
+    }
+
+    private void complete(DeliveryFuture future, DeliveryResult result) {
+        if (inFlight.decrementAndGet() == 0 && shuttingDown) {
+            synchronized (inFlight) {
+                inFlight.notifyAll();
+            }
+        }
+        future.complete(result);
+    }
+
+    private static byte[] serialize(Serializer serializer, Object object,
+                                    Compression compression)
+            throws IOException, SerializationException {
+        PooledByteArrayOutputStream byteStream = PooledByteArrayOutputStream.acquire();
+        try {
+            OutputStream outputStream = SyncHttpDelivery.compress(byteStream, compression);
+            serializer.writeToStream(outputStream, object);
+            outputStream.close();
+            return byteStream.toByteArray();
+        } finally {
+            byteStream.release();
+        }
+    }
+
+    // The URI is cached with the endpoint it was parsed from, so that it is parsed again if the
+    // endpoint changes while it is being parsed
+    private URI getUri(String endpoint) throws URISyntaxException {
+        ParsedUri current = parsedUri;
+        if (current == null || !current.endpoint.equals(endpoint)) {
+            current = new ParsedUri(endpoint, new URI(endpoint));
+            parsedUri = current;
+        }
+        return current.uri;
+    }
+
+    // The connect timeout and proxy belong to the client, so it is rebuilt when they change
+    private JavaHttpClient getClient() {
+        JavaHttpClient current = client;
+        if (current == null) {
+            current = new JavaHttpClient(timeout, proxy, executor);
+            client = current;
+        }
+        return current;
+    }
+
+    @Override
+    public void close() {
+        shuttingDown = true;
+
+        // Wait for requests which are still in flight
+        long end = System.currentTimeMillis() + SHUTDOWN_TIMEOUT;
+        synchronized (inFlight) {
+            long remaining = SHUTDOWN_TIMEOUT;
+            while (inFlight.get() > 0 && remaining > 0) {
+                try {
+                    inFlight.wait(remaining);
+                } catch (InterruptedException ex) {
+                    LOGGER.warn("Shutdown of HTTP client delivery was interrupted");
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                remaining = end - System.currentTimeMillis();
+            }
+        }
+        if (inFlight.get() > 0) {
+            LOGGER.warn("Shutdown of HTTP client delivery took too long");
+        }
+        executor.shutdown();
+        fallbackDelivery.close();
+    }
+
+    private static class ParsedUri {
+        private final String endpoint;
+        private final URI uri;
+
+        ParsedUri(String endpoint, URI uri) {
+            this.endpoint = endpoint;
+            this.uri = uri;
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package com.bugsnag.delivery;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.ProxySelector;
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * A thin wrapper around the non-blocking {@code java.net.http.HttpClient} from Java 11.
+ *
+ * <p>This library is built for Java 6, so the client is called through reflection. The
+ * methods are looked up once, and {@link #isAvailable()} returns false on older versions of
+ * Java where they don't exist.
+ */
+class JavaHttpClient {
+
+    /**
+     * Receives the outcome of a request, on one of the client's executor threads.
+     */
+    interface Callback {
+        void onResponse(int status, String retryAfter);
+
+        void onFailure(Throwable error);
+    }
+
+    private static final Api API = Api.load();
+
+    private final Object client;
+
+    /**
+     * Creates a client, which must only be called if {@link #isAvailable()} is true.
+     *
+     * @param connectTimeout the connect timeout in ms, or 0 for no timeout
+     * @param proxy          the proxy to connect through, or null to connect directly, which
+     *                       must be supported (see {@link #supportsProxy(Proxy)})
+     * @param executor       the executor to run callbacks on
+     */
+    JavaHttpClient(int connectTimeout, Proxy proxy, Executor executor) {
+        Object builder = invoke(API.clientNewBuilder, null);
+        if (connectTimeout > 0) {
+            invoke(API.clientConnectTimeout, builder, duration(connectTimeout));
+        }
+        if (proxy != null && proxy.type() == Proxy.Type.HTTP) {
+            invoke(API.clientProxy, builder, invoke(API.proxySelectorOf, null, proxy.address()));
+        }
+        invoke(API.clientExecutor, builder, executor);
+        client = invoke(API.clientBuild, builder);
+    }
+
+    static boolean isAvailable() {
+        return API != null;
+    }
+
+    /**
+     * The client only connects directly or through an HTTP proxy, and not through SOCKS.
+     *
+     * @return true if requests can be sent through the proxy
+     */
+    static boolean supportsProxy(Proxy proxy) {
+        return proxy == null
+                || proxy.type() == Proxy.Type.DIRECT
+                || (proxy.type() == Proxy.Type.HTTP
+                && proxy.address() instanceof InetSocketAddress);
+    }
+
+    /**
+     * Sends a POST request without waiting for the response.
+     *
+     * @param timeout  the time to wait for the response in ms, or 0 for no timeout
+     * @param callback the callback to notify of the outcome
+     */
+    void post(URI uri, Map<String, String> headers, byte[] body, int timeout,
+              final Callback callback) {
+        Object builder = invoke(API.requestNewBuilder, null, uri);
+        for (Map.Entry<String, String> entry : headers.entrySet()) {
+            invoke(API.requestHeader, builder, entry.getKey(), entry.getValue());
+        }
+        if (timeout > 0) {
+            invoke(API.requestTimeout, builder, duration(timeout));
+        }
+        invoke(API.requestPost, builder, invoke(API.bodyPublishersOfByteArray, null, body));
+        Object request = invoke(API.requestBuild, builder);
+        Object future = invoke(API.clientSendAsync, client, request,
+                invoke(API.bodyHandlersDiscarding, null));
+
+        // Implement the BiConsumer passed to whenComplete with a dynamic proxy
+        Object action = java.lang.reflect.Proxy.newProxyInstance(
+                JavaHttpClient.class.getClassLoader(),
+                new Class<?>[]{API.biConsumer},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if ("accept".equals(method.getName())) {
+                            complete(args[0], (Throwable) args[1], callback);
+                            return null;
+                        } else if ("equals".equals(method.getName())) {
+                            return proxy == args[0];
+                        } else if ("hashCode".equals(method.getName())) {
+                            return System.identityHashCode(proxy);
+                        }
+                        return "JavaHttpClient.Callback";
+                    }
+                });
+        invoke(API.futureWhenComplete, future, action);
+    }
+
+    private static void complete(Object response, Throwable error, Callback callback) {
+        if (error != null) {
+            // Failures are wrapped in a CompletionException
+            callback.onFailure(error.getCause() != null ? error.getCause() : error);
+            return;
+        }
+        int status = (Integer) invoke(API.responseStatusCode, response);
+        Object headers = invoke(API.responseHeaders, response);
+        Object retryAfter = invoke(API.optionalOrElse,
+                invoke(API.headersFirstValue, headers, "Retry-After"), (Object) null);
+        callback.onResponse(status, (String) retryAfter);
+    }
+
+    private static Object duration(long millis) {
+        return invoke(API.durationOfMillis, null, millis);
+    }
+
+    private static Object invoke(Method method, Object target, Object... args) {
+        try {
+            return method.invoke(target, args);
+        } catch (IllegalAccessException ex) {
+            throw new IllegalStateException("Unable to call " + method, ex);
+        } catch (InvocationTargetException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException("Unable to call " + method, cause);
+        }
+    }
+
+    /**
+     * The reflected classes and methods of the client API.
+     */
+    private static class Api {
+        private Class<?> biConsumer;
+        private Method clientNewBuilder;
+        private Method clientConnectTimeout;
+        private Method clientProxy;
+        private Method clientExecutor;
+        private Method clientBuild;
+        private Method clientSendAsync;
+        private Method requestNewBuilder;
+        private Method requestHeader;
+        private Method requestTimeout;
+        private Method requestPost;
+        private Method requestBuild;
+        private Method bodyPublishersOfByteArray;
+        private Method bodyHandlersDiscarding;
+        private Method responseStatusCode;
+        private Method responseHeaders;
+        private Method headersFirstValue;
+        private Method optionalOrElse;
+        private Method durationOfMillis;
+        private Method proxySelectorOf;
+        private Method futureWhenComplete;
+
+        /**
+         * @return the API, or null if this version of Java doesn't have it
+         */
+        static Api load() {
+            try {
+                Api api = new Api();
+                Class<?> duration = Class.forName("java.time.Duration");
+                api.durationOfMillis = duration.getMethod("ofMillis", long.class);
+                api.proxySelectorOf = ProxySelector.class.getMethod("of", InetSocketAddress.class);
+
+                Class<?> clientBuilder = Class.forName("java.net.http.HttpClient$Builder");
+                api.clientConnectTimeout = clientBuilder.getMethod("connectTimeout", duration);
+                api.clientProxy = clientBuilder.getMethod("proxy", ProxySelector.class);
+                api.clientExecutor = clientBuilder.getMethod("executor", Executor.class);
+                api.clientBuild = clientBuilder.getMethod("build");
+
+                Class<?> requestBuilder = Class.forName("java.net.http.HttpRequest$Builder");
+                api.requestHeader = requestBuilder.getMethod("header", String.class, String.class);
+                api.requestTimeout = requestBuilder.getMethod("timeout", duration);
+                api.requestPost = requestBuilder.getMethod("POST",
+                        Class.forName("java.net.http.HttpRequest$BodyPublisher"));
+                api.requestBuild = requestBuilder.getMethod("build");
+                api.bodyPublishersOfByteArray = Class.forName(
+                        "java.net.http.HttpRequest$BodyPublishers")
+                        .getMethod("ofByteArray", byte[].class);
+
+                Class<?> request = Class.forName("java.net.http.HttpRequest");
+                api.requestNewBuilder = request.getMethod("newBuilder", URI.class);
+                Class<?> client = Class.forName("java.net.http.HttpClient");
+                api.clientNewBuilder = client.getMethod("newBuilder");
+                api.clientSendAsync = client.getMethod("sendAsync", request,
+                        Class.forName("java.net.http.HttpResponse$BodyHandler"));
+                api.bodyHandlersDiscarding = Class.forName(
+                        "java.net.http.HttpResponse$BodyHandlers").getMethod("discarding");
+
+                Class<?> response = Class.forName("java.net.http.HttpResponse");
+                api.responseStatusCode = response.getMethod("statusCode");
+                api.responseHeaders = response.getMethod("headers");
+                api.headersFirstValue = Class.forName("java.net.http.HttpHeaders")
+                        .getMethod("firstValue", String.class);
+                api.optionalOrElse = Class.forName("java.util.Optional")
+                        .getMethod("orElse", Object.class);
+
+                api.biConsumer = Class.forName("java.util.function.BiConsumer");
+                api.futureWhenComplete = Class.forName("java.util.concurrent.CompletableFuture")
+                        .getMethod("whenComplete", api.biConsumer);
+                return api;
+            } catch (ClassNotFoundException ex) {
+                return null;
+            } catch (NoSuchMethodException ex) {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.bugsnag.delivery;
+
+/**
+ * Determines what an {@link AsyncHttpDelivery} does with a report when its delivery queue
+ * is full.
+ */
+public enum OverflowPolicy {
+
+    /**
+     * Discard the report which could not be queued.
+     */
+    DROP_NEWEST,
+
+    /**
+     * Discard the oldest queued report to make room for the new one.
+     */
+    DROP_OLDEST,
+
+    /**
+     * Keep one in every N reports which could not be queued by discarding the oldest queued
+     * report, and discard the rest. See {@link AsyncHttpDelivery#setOverflowSampleRate(int)}.
+     */
+    SAMPLE,
+
+    /**
+     * Wait for space in the queue for a bounded amount of time, then discard the report. See
+     * {@link AsyncHttpDelivery#setOverflowTimeout(int)}.
+     */
+    BLOCK_WITH_TIMEOUT
+}
@@ -0,0 +1,23 @@
+package com.bugsnag.delivery;
+
+import com.bugsnag.serialization.Serializer;
+
+import java.util.Map;
+
+/**
+ * A delivery which reports the outcome of each attempt, so that a wrapping delivery can
+ * decide whether to try again.
+ */
+public interface ResultDelivery extends Delivery {
+    /**
+     * Deliver the object using the serializer, and report whether it was delivered.
+     *
+     * @param serializer the serializer to use.
+     * @param object     the object to deliver.
+     * @param headers    HTTP headers which must be appended to the request.
+     * @return the result of the delivery attempt.
+     */
+    DeliveryResult deliverWithResult(Serializer serializer,
+                                     Object object,
+                                     Map<String, String> headers);
+}
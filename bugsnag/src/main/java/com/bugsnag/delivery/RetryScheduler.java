@@ -0,0 +1,38 @@
+package com.bugsnag.delivery;
+
+import com.bugsnag.util.IdleExecutors;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Schedules delivery retries for all {@link RetryingDelivery} instances. A single timer thread
+ * waits for retries to become due and hands them to a small pool of worker threads, so that
+ * a slow request never delays the timer.
+ */
+class RetryScheduler {
+    private static final int KEEP_ALIVE_MS = 5000;
+    private static final int WORKER_COUNT = 2;
+
+    private static final ScheduledThreadPoolExecutor TIMER =
+            IdleExecutors.newScheduledExecutor("bugsnag-retry-timer-", KEEP_ALIVE_MS);
+    private static final ThreadPoolExecutor WORKERS = IdleExecutors.newFixedExecutor(
+            "bugsnag-retry-delivery-", WORKER_COUNT, KEEP_ALIVE_MS);
+
+    private RetryScheduler() {
+    }
+
+    /**
+     * Runs the task on a worker thread once the delay has passed.
+     */
+    static ScheduledFuture<?> schedule(final Runnable task, long delayMs) {
+        return TIMER.schedule(new Runnable() {
+            @Override
+            public void run() {
+                WORKERS.execute(task);
+            }
+        }, delayMs, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,279 @@
+package com.bugsnag.delivery;
+
+import com.bugsnag.serialization.Serializer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Retries payloads which could not be delivered but might be later, such as after a network
+ * error, a 5xx response or a 429 response (see {@link DeliveryResult.Status#UNDELIVERED}).
+ *
+ * <p>Retries wait for an exponential backoff with random jitter, so that clients which failed
+ * together don't retry together, or for as long as the server asked in a Retry-After header.
+ * The caller is never blocked: payloads are sent on a small pool of background threads shared
+ * by all instances, and retries are scheduled on a timer which hands them to the same pool.
+ * The number of payloads waiting to be sent or retried is limited, and payloads which exceed
+ * it are discarded rather than adding to the load on a struggling server.
+ *
+ * <p>The base delivery must report the result of each attempt, so it is typically a {@link
+ * SyncHttpDelivery} or a {@link HttpClientDelivery}.
+ */
+public class RetryingDelivery extends ForwardingHttpDelivery {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RetryingDelivery.class);
+    private static final Random RANDOM = new Random();
+    private static final int SHUTDOWN_TIMEOUT = 5000;
+
+    public static final int DEFAULT_MAX_RETRIES = 3;
+    public static final int DEFAULT_INITIAL_BACKOFF_MS = 1000;
+    public static final int DEFAULT_MAX_BACKOFF_MS = 60000;
+    public static final int DEFAULT_MAX_PENDING_RETRIES = 100;
+
+    private volatile int maxRetries = DEFAULT_MAX_RETRIES;
+    private volatile int initialBackoffMs = DEFAULT_INITIAL_BACKOFF_MS;
+    private volatile int maxBackoffMs = DEFAULT_MAX_BACKOFF_MS;
+    private volatile int maxPendingRetries = DEFAULT_MAX_PENDING_RETRIES;
+    private volatile boolean shuttingDown = false;
+
+    private final Set<Retry> pending =
+            Collections.newSetFromMap(new ConcurrentHashMap<Retry, Boolean>());
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicLong droppedReports = new AtomicLong();
+
+    /**
+     * Creates a new instance, which retries payloads sent with the given delivery
+     *
+     * @param baseDelivery the delivery to send payloads with, which reports whether they
+     *                     were delivered
+     */
+    public RetryingDelivery(ResultDelivery baseDelivery) {
+        super(baseDelivery);
+    }
+
+    /**
+     * Set the maximum number of times to retry a payload after the first attempt.
+     *
+     * @param maxRetries the maximum number of retries
+     */
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    /**
+     * Set the backoff before the first retry. The backoff doubles for each retry after that,
+     * up to the maximum backoff, and a random jitter of up to half the backoff is subtracted.
+     *
+     * @param initialBackoffMs the initial backoff (in ms)
+     */
+    public void setInitialBackoffMs(int initialBackoffMs) {
+        this.initialBackoffMs = initialBackoffMs;
+    }
+
+    /**
+     * Set the longest time to wait before retrying. A payload for which the server asked for a
+     * longer wait in a Retry-After header is discarded.
+     *
+     * @param maxBackoffMs the maximum backoff (in ms)
+     */
+    public void setMaxBackoffMs(int maxBackoffMs) {
+        this.maxBackoffMs = maxBackoffMs;
+    }
+
+    /**
+     * Set the maximum number of payloads which can be waiting to be sent or retried at once.
+     *
+     * @param maxPendingRetries the maximum number of pending payloads
+     */
+    public void setMaxPendingRetries(int maxPendingRetries) {
+        this.maxPendingRetries = maxPendingRetries;
+    }
+
+    /**
+     * @return the number of payloads which were not delivered after retrying, or which were
+     *         not sent or retried because too many payloads were pending
+     */
+    public long getDroppedReportCount() {
+        return droppedReports.get();
+    }
+
+    /**
+     * @return the number of payloads waiting to be sent or retried
+     */
+    public int getPendingRetryCount() {
+        return pendingCount.get();
+    }
+
+    @Override
+    public void deliver(Serializer serializer, Object object, Map<String, String> headers) {
+        Retry retry = new Retry(serializer, object, headers);
+        if (shuttingDown) {
+            attempt(retry);
+        } else if (reserve(retry)) {
+            schedule(retry, 0);
+        }
+    }
+
+    private void attempt(Retry retry) {
+        DeliveryResult result = ((ResultDelivery) baseDelivery).deliverWithResult(
+                retry.serializer, retry.object, retry.headers);
+        if (result.getStatus() == DeliveryResult.Status.UNDELIVERED) {
+            scheduleRetry(retry, result);
+        } else {
+            release(retry);
+        }
+    }
+
+    private void scheduleRetry(final Retry retry, DeliveryResult result) {
+        if (shuttingDown || retry.attempts >= maxRetries) {
+            drop(retry, "Giving up on report after {} retries", retry.attempts);
+            return;
+        }
+
+        long delayMs = backoff(retry.attempts);
+        if (result.getRetryAfterMs() > maxBackoffMs) {
+            drop(retry, "Giving up on report, server asked to retry after {}ms",
+                    result.getRetryAfterMs());
+            return;
+        }
+        delayMs = Math.max(delayMs, result.getRetryAfterMs());
+
+        if (!retry.counted && !reserve(retry)) {
+            return;
+        }
+        retry.attempts++;
+        schedule(retry, delayMs);
+    }
+
+    /**
+     * Counts the payload as pending, unless too many already are.
+     *
+     * @return false if the payload was dropped
+     */
+    private boolean reserve(Retry retry) {
+        if (pendingCount.incrementAndGet() > maxPendingRetries) {
+            pendingCount.decrementAndGet();
+            drop(retry, "Too many pending payloads, dropped report", null);
+            return false;
+        }
+        retry.counted = true;
+        return true;
+    }
+
+    private void schedule(final Retry retry, long delayMs) {
+        pending.add(retry);
+        retry.future = RetryScheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                // The retry may have been sent already by close
+                if (!pending.remove(retry)) {
+                    return;
+                }
+                running.incrementAndGet();
+                try {
+                    attempt(retry);
+                } finally {
+                    if (running.decrementAndGet() == 0) {
+                        synchronized (running) {
+                            running.notifyAll();
+                        }
+                    }
+                }
+            }
+        }, delayMs);
+    }
+
+    /**
+     * Calculates an exponential backoff, with "equal jitter" so that the wait is at least
+     * half the backoff.
+     */
+    private long backoff(int attempts) {
+        long backoff = Math.min((long) initialBackoffMs << Math.min(attempts, 30), maxBackoffMs);
+        long half = backoff / 2;
+        return half + (long) (RANDOM.nextDouble() * (backoff - half));
+    }
+
+    private void drop(Retry retry, String message, Object arg) {
+        droppedReports.incrementAndGet();
+        LOGGER.debug(message, arg);
+        release(retry);
+    }
+
+    private void release(Retry retry) {
+        if (retry.counted) {
+            retry.counted = false;
+            pendingCount.decrementAndGet();
+        }
+    }
+
+    @Override
+    public void close() {
+        shuttingDown = true;
+
+        // Make a final attempt to send any payloads waiting to be sent or retried, for as long
+        // as the shutdown timeout allows
+        List<Retry> remaining = new ArrayList<Retry>();
+        for (Retry retry : pending) {
+            if (pending.remove(retry)) {
+                ScheduledFuture<?> future = retry.future;
+                if (future != null) {
+                    future.cancel(false);
+                }
+                remaining.add(retry);
+            }
+        }
+        long end = System.currentTimeMillis() + SHUTDOWN_TIMEOUT;
+        for (Retry retry : remaining) {
+            if (System.currentTimeMillis() < end) {
+                attempt(retry);
+            } else {
+                drop(retry, "Shutdown of retrying delivery took too long, dropped report", null);
+            }
+        }
+
+        // Wait for attempts which are still running on the worker threads
+        synchronized (running) {
+            long remainingMs = end - System.currentTimeMillis();
+            while (running.get() > 0 && remainingMs > 0) {
+                try {
+                    running.wait(remainingMs);
+                } catch (InterruptedException ex) {
+                    LOGGER.warn("Shutdown of retrying delivery was interrupted");
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                remainingMs = end - System.currentTimeMillis();
+            }
+        }
+        if (running.get() > 0) {
+            LOGGER.warn("Shutdown of retrying delivery took too long");
+        }
+        baseDelivery.close();
+    }
+
+    private static class Retry {
+        private final Serializer serializer;
+        private final Object object;
+        private final Map<String, String> headers;
+        private int attempts;
+        private boolean counted;
+        private volatile ScheduledFuture<?> future;
+
+        Retry(Serializer serializer, Object object, Map<String, String> headers) {
+            this.serializer = serializer;
+            this.object = object;
+            this.headers = headers;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.bugsnag.delivery;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A memory-mapped spool file, holding a sequence of records which are each prefixed with
+ * their length and whether they have been acknowledged. The length of a record is written
+ * last, so a record which was only partly written when the process died is ignored.
+ */
+class SpoolSegment {
+    static final String FILE_PREFIX = "bugsnag-spool-";
+    static final String FILE_SUFFIX = ".seg";
+
+    private static final int RECORD_HEADER_SIZE = 5;
+    private static final byte PENDING = 0;
+    private static final byte ACKNOWLEDGED = 1;
+
+    private final long sequence;
+    private final File file;
+    private final MappedByteBuffer buffer;
+    private int writePosition;
+    private int readPosition;
+    private int pendingCount;
+
+    private SpoolSegment(long sequence, File file, MappedByteBuffer buffer) {
+        this.sequence = sequence;
+        this.file = file;
+        this.buffer = buffer;
+    }
+
+    /**
+     * Creates a new, empty segment with room for at least one record of the given size.
+     */
+    static SpoolSegment create(File directory, long sequence,
+                               int capacity, int recordSize) throws IOException {
+        File file = new File(directory, String.format("%s%020d%s",
+                FILE_PREFIX, sequence, FILE_SUFFIX));
+        int size = Math.max(capacity, recordSize + RECORD_HEADER_SIZE);
+        return new SpoolSegment(sequence, file, map(file, size));
+    }
+
+    /**
+     * Opens an existing segment, skipping the records which have already been acknowledged.
+     */
+    static SpoolSegment open(File file) throws IOException {
+        String name = file.getName();
+        long sequence = Long.parseLong(name.substring(FILE_PREFIX.length(),
+                name.length() - FILE_SUFFIX.length()));
+        SpoolSegment segment = new SpoolSegment(sequence, file, map(file, (int) file.length()));
+        segment.scan();
+        return segment;
+    }
+
+    /**
+     * @return true if the file name matches the name of a segment file
+     */
+    static boolean isSegmentFile(String name) {
+        return name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX)
+                && name.length() > FILE_PREFIX.length() + FILE_SUFFIX.length();
+    }
+
+    private static MappedByteBuffer map(File file, int size) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            // The mapping remains valid once the file is closed
+            FileChannel channel = randomAccessFile.getChannel();
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    private void scan() {
+        int position = 0;
+        readPosition = -1;
+        while (position + RECORD_HEADER_SIZE <= buffer.capacity()) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || position + RECORD_HEADER_SIZE + length > buffer.capacity()) {
+                break;
+            }
+            if (buffer.get(position + 4) == PENDING) {
+                pendingCount++;
+                if (readPosition == -1) {
+                    readPosition = position;
+                }
+            }
+            position += RECORD_HEADER_SIZE + length;
+        }
+        writePosition = position;
+        if (readPosition == -1) {
+            readPosition = position;
+        }
+    }
+
+    long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @return the size of the file on disk
+     */
+    int getSize() {
+        return buffer.capacity();
+    }
+
+    int getPendingCount() {
+        return pendingCount;
+    }
+
+    /**
+     * Appends a record to the segment.
+     *
+     * @return false if there isn't room for the record
+     */
+    boolean append(byte[] record) {
+        if (writePosition + RECORD_HEADER_SIZE + record.length > buffer.capacity()) {
+            return false;
+        }
+        ByteBuffer slice = buffer.duplicate();
+        slice.position(writePosition + 4);
+        slice.put(PENDING);
+        slice.put(record);
+        buffer.putInt(writePosition, record.length);
+        writePosition += RECORD_HEADER_SIZE + record.length;
+        pendingCount++;
+        return true;
+    }
+
+    /**
+     * @return the position of the oldest record which has not been acknowledged, or -1 if
+     *         there are none
+     */
+    int firstPending() {
+        while (readPosition < writePosition) {
+            if (buffer.get(readPosition + 4) == PENDING) {
+                return readPosition;
+            }
+            readPosition += RECORD_HEADER_SIZE + buffer.getInt(readPosition);
+        }
+        return -1;
+    }
+
+    /**
+     * @return a copy of the record at the given position
+     */
+    byte[] read(int position) {
+        byte[] record = new byte[buffer.getInt(position)];
+        ByteBuffer slice = buffer.duplicate();
+        slice.position(position + RECORD_HEADER_SIZE);
+        slice.get(record);
+        return record;
+    }
+
+    void acknowledge(int position) {
+        if (buffer.get(position + 4) == PENDING) {
+            buffer.put(position + 4, ACKNOWLEDGED);
+            pendingCount--;
+        }
+    }
+
+    /**
+     * Writes any changes which are still only in memory to disk.
+     */
+    void flush() {
+        buffer.force();
+    }
+
+    boolean delete() {
+        return file.delete();
+    }
+}
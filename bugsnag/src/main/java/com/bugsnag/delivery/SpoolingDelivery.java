@@ -0,0 +1,442 @@
+package com.bugsnag.delivery;
+
+import com.bugsnag.serialization.SerializationException;
+import com.bugsnag.serialization.Serializer;
+import com.bugsnag.util.IdleExecutors;
+import com.bugsnag.util.PooledByteArrayOutputStream;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Delivers payloads through a spool on disk, so that they survive network outages and
+ * application restarts.
+ *
+ * <p>Each payload is serialized on the calling thread and appended to a memory-mapped segment
+ * file in the spool directory. A background thread sends the spooled payloads in order using
+ * the base delivery, and waits with an exponential backoff when a payload could not be
+ * delivered but might be later (see {@link DeliveryResult.Status#UNDELIVERED}). Segment files
+ * are deleted once all of their payloads have been acknowledged, and the oldest segments are
+ * discarded when the spool would exceed its maximum size.
+ *
+ * <p>The value of the Bugsnag-Sent-At header is not spooled. It is set to the current time each
+ * time a payload is sent, so that a payload sent after an outage doesn't claim to have been
+ * sent at the time it was spooled.
+ *
+ * <p>Payloads left in the spool when the application exits are sent by the next spooling
+ * delivery created for the same directory. A spool directory must not be shared by more than
+ * one delivery at a time.
+ *
+ * <p>Java has no way to unmap a memory-mapped file before its buffer is garbage collected.
+ * On platforms which don't allow a mapped file to be deleted, such as Windows, segment files
+ * whose payloads have all been sent may stay on disk until then. They are deleted by the next
+ * spooling delivery created for the directory.
+ */
+public class SpoolingDelivery extends ForwardingHttpDelivery {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SpoolingDelivery.class);
+    private static final int SHUTDOWN_TIMEOUT_MS = 5000;
+
+    // The content type of payloads in other formats is kept in the record with the headers
+    private static final String CONTENT_TYPE_HEADER = "Content-Type";
+    private static final String SENT_AT_HEADER = "Bugsnag-Sent-At";
+
+    public static final int DEFAULT_SEGMENT_BYTES = 1024 * 1024;
+    public static final long DEFAULT_MAX_SPOOL_BYTES = 16L * 1024 * 1024;
+    public static final int DEFAULT_INITIAL_BACKOFF_MS = 1000;
+    public static final int DEFAULT_MAX_BACKOFF_MS = 5 * 60 * 1000;
+
+    private final File directory;
+    private final Serializer serializer = new Serializer();
+    private Serializer replaySerializer = serializer;
+
+    // Guarded by segments
+    private final LinkedList<SpoolSegment> segments = new LinkedList<SpoolSegment>();
+    private long nextSequence;
+    private long spoolBytes;
+    private boolean replayScheduled;
+    private int backoffMs; // 0 unless the last attempt was undelivered
+    private boolean shuttingDown;
+
+    private volatile int segmentBytes = DEFAULT_SEGMENT_BYTES;
+    private volatile long maxSpoolBytes = DEFAULT_MAX_SPOOL_BYTES;
+    private volatile int initialBackoffMs = DEFAULT_INITIAL_BACKOFF_MS;
+    private volatile int maxBackoffMs = DEFAULT_MAX_BACKOFF_MS;
+    private final AtomicLong droppedReports = new AtomicLong();
+
+    // Replays reschedule themselves while the endpoint is down, so the thread may never be
+    // idle. Spooled payloads are already on disk, so it is a daemon thread.
+    private final ScheduledThreadPoolExecutor replayExecutor = IdleExecutors.newScheduledExecutor(
+            "bugsnag-spool-delivery-", SHUTDOWN_TIMEOUT_MS, true);
+
+    private final Runnable replayTask = new Runnable() {
+        @Override
+        public void run() {
+            replay();
+        }
+    };
+
+    /**
+     * Creates a new instance, which spools payloads in the given directory and sends them
+     * using the given delivery. Any payloads already in the directory are sent in the
+     * background.
+     *
+     * @param baseDelivery the delivery to send payloads with, which reports whether they
+     *                     were delivered so that payloads are only removed once they are
+     * @param directory    the directory to store the spool in, which is created if necessary
+     */
+    public SpoolingDelivery(ResultDelivery baseDelivery, File directory) {
+        super(baseDelivery);
+        this.directory = directory;
+
+        // Payloads waiting for a backoff stay on disk until the next start
+        replayExecutor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            LOGGER.warn("Unable to create spool directory {}", directory);
+        }
+        loadSegments();
+    }
+
+    /**
+     * Set the size of each segment file. A payload larger than this is stored in a segment
+     * of its own.
+     *
+     * @param segmentBytes the size of a segment file (in bytes)
+     */
+    public void setSegmentBytes(int segmentBytes) {
+        if (segmentBytes <= 0) {
+            throw new IllegalArgumentException("Segment size must be greater than zero");
+        }
+        this.segmentBytes = segmentBytes;
+    }
+
+    /**
+     * Set the maximum total size of the segment files. When adding a segment would exceed
+     * this, the oldest segments are deleted along with any payloads which have not yet been
+     * sent.
+     *
+     * @param maxSpoolBytes the maximum size of the spool on disk (in bytes)
+     */
+    public void setMaxSpoolBytes(long maxSpoolBytes) {
+        this.maxSpoolBytes = maxSpoolBytes;
+    }
+
+    /**
+     * Set how long to wait before retrying after the first failed attempt. The wait doubles
+     * after each consecutive failure, up to the maximum backoff.
+     *
+     * @param initialBackoffMs the initial backoff (in ms)
+     */
+    public void setInitialBackoffMs(int initialBackoffMs) {
+        this.initialBackoffMs = initialBackoffMs;
+    }
+
+    /**
+     * Set the longest time to wait between attempts to send a spooled payload.
+     *
+     * @param maxBackoffMs the maximum backoff (in ms)
+     */
+    public void setMaxBackoffMs(int maxBackoffMs) {
+        this.maxBackoffMs = maxBackoffMs;
+    }
+
+    /**
+     * @return the number of payloads discarded because the spool was full
+     */
+    public long getDroppedReportCount() {
+        return droppedReports.get();
+    }
+
+    /**
+     * @return the number of payloads in the spool which have not yet been sent
+     */
+    public int getPendingReportCount() {
+        synchronized (segments) {
+            int count = 0;
+            for (SpoolSegment segment : segments) {
+                count += segment.getPendingCount();
+            }
+            return count;
+        }
+    }
+
+    @Override
+    public void deliver(Serializer serializer, Object object, Map<String, String> headers) {
+        byte[] record;
+        try {
+            record = encode(serializer, object, headers);
+        } catch (SerializationException ex) {
+            LOGGER.warn("Error not reported to Bugsnag - exception when serializing payload", ex);
+            return;
+        } catch (IOException ex) {
+            LOGGER.warn("Error not reported to Bugsnag - exception when serializing payload", ex);
+            return;
+        }
+
+        synchronized (segments) {
+            if (!shuttingDown && append(record)) {
+                scheduleReplay(0);
+                return;
+            }
+        }
+
+        // Fall back to sending the payload directly if it couldn't be spooled
+        baseDelivery.deliver(serializer, object, headers);
+    }
+
+    private void loadSegments() {
+        File[] files = directory.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return SpoolSegment.isSegmentFile(name);
+            }
+        });
+        if (files == null) {
+            return;
+        }
+
+        // File names are zero-padded sequence numbers, so sort in the order they were written
+        Arrays.sort(files);
+        synchronized (segments) {
+            for (File file : files) {
+                try {
+                    SpoolSegment segment = SpoolSegment.open(file);
+                    nextSequence = segment.getSequence() + 1;
+                    if (segment.getPendingCount() == 0) {
+                        deleteSegment(segment);
+                    } else {
+                        segments.add(segment);
+                        spoolBytes += segment.getSize();
+                    }
+                } catch (IOException ex) {
+                    LOGGER.warn("Unable to read spool file {}", file, ex);
+                } catch (NumberFormatException ex) {
+                    LOGGER.warn("Ignoring unexpected spool file {}", file);
+                }
+            }
+            if (!segments.isEmpty()) {
+                scheduleReplay(0);
+            }
+        }
+    }
+
+    // Must be called while holding the lock on segments
+    private boolean append(byte[] record) {
+        SpoolSegment current = segments.isEmpty() ? null : segments.getLast();
+        if (current != null && current.append(record)) {
+            return true;
+        }
+
+        try {
+            SpoolSegment segment = SpoolSegment.create(directory, nextSequence,
+                    segmentBytes, record.length);
+            if (segment.getSize() > maxSpoolBytes) {
+                deleteSegment(segment);
+                droppedReports.incrementAndGet();
+                LOGGER.debug("Dropped report larger than the maximum spool size");
+                return true;
+            }
+            nextSequence++;
+
+            // Make room by discarding the oldest segments
+            while (spoolBytes + segment.getSize() > maxSpoolBytes && !segments.isEmpty()) {
+                SpoolSegment oldest = segments.removeFirst();
+                spoolBytes -= oldest.getSize();
+                droppedReports.addAndGet(oldest.getPendingCount());
+                LOGGER.debug("Spool full, dropped {} reports", oldest.getPendingCount());
+                deleteSegment(oldest);
+            }
+
+            segments.add(segment);
+            spoolBytes += segment.getSize();
+            return segment.append(record);
+        } catch (IOException ex) {
+            LOGGER.warn("Unable to write to spool directory {}", directory, ex);
+            return false;
+        }
+    }
+
+    // Must be called while holding the lock on segments
+    private void scheduleReplay(int delayMs) {
+        if (!replayScheduled && !shuttingDown) {
+            replayScheduled = true;
+            replayExecutor.schedule(replayTask, delayMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void replay() {
+        while (true) {
+            SpoolSegment segment = null;
+            int position = -1;
+            byte[] record;
+
+            synchronized (segments) {
+                while (!segments.isEmpty()) {
+                    segment = segments.getFirst();
+                    position = segment.firstPending();
+                    if (position != -1) {
+                        break;
+                    }
+                    removeSegment(segment);
+                }
+                if (shuttingDown || position == -1) {
+                    replayScheduled = false;
+                    return;
+                }
+                record = segment.read(position);
+            }
+
+            DeliveryResult result = send(record);
+
+            synchronized (segments) {
+                if (result.getStatus() == DeliveryResult.Status.UNDELIVERED) {
+                    backoffMs = backoffMs == 0
+                            ? initialBackoffMs : Math.min(backoffMs * 2, maxBackoffMs);
+                    replayScheduled = false;
+                    scheduleReplay(backoffMs);
+                    return;
+                }
+                backoffMs = 0;
+
+                // The segment may have been discarded to make room while sending
+                if (segments.contains(segment)) {
+                    segment.acknowledge(position);
+                    if (segment.getPendingCount() == 0) {
+                        removeSegment(segment);
+                    }
+                }
+            }
+        }
+    }
+
+    private DeliveryResult send(byte[] record) {
+        try {
+            DataInputStream inputStream = new DataInputStream(new ByteArrayInputStream(record));
+            int headerCount = inputStream.readInt();
+            Map<String, String> headers = new LinkedHashMap<String, String>();
+            for (int k = 0; k < headerCount; k++) {
+                headers.put(inputStream.readUTF(), inputStream.readUTF());
+            }
+            byte[] payload = new byte[inputStream.available()];
+            inputStream.readFully(payload);
+            if (headers.containsKey(SENT_AT_HEADER)) {
+                headers.put(SENT_AT_HEADER, formatSentAt(new Date()));
+            }
+            return ((ResultDelivery) baseDelivery).deliverWithResult(
+                    getReplaySerializer(headers.remove(CONTENT_TYPE_HEADER)), payload, headers);
+        } catch (IOException ex) {
+            LOGGER.warn("Discarding unreadable spooled report", ex);
+            return DeliveryResult.fromError(DeliveryResult.Status.FAILURE, ex);
+        } catch (RuntimeException ex) {
+            LOGGER.warn("Error not reported to Bugsnag - exception when sending spooled report", ex);
+            return DeliveryResult.fromError(DeliveryResult.Status.UNDELIVERED, ex);
+        }
+    }
+
+    private static String formatSentAt(Date date) {
+        DateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return format.format(date);
+    }
+
+    // Spooled payloads are already serialized, so only the content type of the serializer
+    // used to send them matters
+    private Serializer getReplaySerializer(String contentType) {
+        if (contentType == null) {
+            return serializer;
+        }
+        if (!contentType.equals(replaySerializer.getContentType())) {
+            replaySerializer = new Serializer(new JsonFactory(), contentType);
+        }
+        return replaySerializer;
+    }
+
+    /**
+     * Serializes the headers and payload into a single record.
+     */
+    private static byte[] encode(Serializer serializer,
+                                 Object object,
+                                 Map<String, String> headers)
+            throws IOException, SerializationException {
+        PooledByteArrayOutputStream outputStream = PooledByteArrayOutputStream.acquire();
+        try {
+            String contentType = serializer.getContentType();
+            boolean json = Serializer.JSON_CONTENT_TYPE.equals(contentType);
+            DataOutputStream dataOutputStream = new DataOutputStream(outputStream);
+            dataOutputStream.writeInt(json ? headers.size() : headers.size() + 1);
+            for (Map.Entry<String, String> entry : headers.entrySet()) {
+                // The time a payload is sent is set when it is replayed
+                boolean sentAt = SENT_AT_HEADER.equals(entry.getKey());
+                dataOutputStream.writeUTF(entry.getKey());
+                dataOutputStream.writeUTF(sentAt ? "" : entry.getValue());
+            }
+            if (!json) {
+                dataOutputStream.writeUTF(CONTENT_TYPE_HEADER);
+                dataOutputStream.writeUTF(contentType);
+            }
+            dataOutputStream.flush();
+            serializer.writeToStream(outputStream, object);
+            return outputStream.toByteArray();
+        } finally {
+            outputStream.release();
+        }
+    }
+
+    // Must be called while holding the lock on segments
+    private void removeSegment(SpoolSegment segment) {
+        segments.remove(segment);
+        spoolBytes -= segment.getSize();
+        deleteSegment(segment);
+    }
+
+    private void deleteSegment(SpoolSegment segment) {
+        // A file which can't be deleted yet (e.g. because it is still mapped on Windows) is
+        // deleted on the next start, as all of its payloads have been acknowledged
+        if (!segment.delete()) {
+            LOGGER.debug("Unable to delete spool segment {}", segment.getSequence());
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (segments) {
+            shuttingDown = true;
+        }
+        replayExecutor.shutdown();
+
+        try {
+            if (!replayExecutor.awaitTermination(SHUTDOWN_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                LOGGER.warn("Shutdown of spool delivery thread took too long");
+            }
+        } catch (InterruptedException ex) {
+            LOGGER.warn("Shutdown of spool delivery thread was interrupted");
+        }
+
+        synchronized (segments) {
+            for (SpoolSegment segment : segments) {
+                segment.flush();
+            }
+        }
+        baseDelivery.close();
+    }
+}
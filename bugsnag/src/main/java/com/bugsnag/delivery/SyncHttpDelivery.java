@@ -7,24 +7,44 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.Proxy;
 import java.net.URL;
 import java.net.UnknownHostException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
 import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
 
-public class SyncHttpDelivery implements HttpDelivery {
+public class SyncHttpDelivery implements ConfigurableHttpDelivery, ResultDelivery {
     private static final Logger LOGGER = LoggerFactory.getLogger(SyncHttpDelivery.class);
 
     public static final String DEFAULT_NOTIFY_ENDPOINT = "https://notify.bugsnag.com";
     public static final String DEFAULT_SESSION_ENDPOINT = "https://sessions.bugsnag.com";
     protected static final int DEFAULT_TIMEOUT = 5000;
+    protected static final int DEFAULT_READ_TIMEOUT = 10000;
+    protected static final int DEFAULT_DEADLINE = 30000;
+
+    private static final int DRAIN_BUFFER_SIZE = 512;
+    private static final int COMPRESSION_BUFFER_SIZE = 8192;
+    private static final String RETRY_AFTER_DATE_FORMAT = "EEE, dd MMM yyyy HH:mm:ss zzz";
 
     protected String endpoint;
     protected int timeout = DEFAULT_TIMEOUT;
+    protected int readTimeout = DEFAULT_READ_TIMEOUT;
+    protected int deadline = DEFAULT_DEADLINE;
     protected Proxy proxy;
+    protected Compression compression = Compression.NONE;
+
+    private volatile ParsedUrl parsedUrl;
+    private final AtomicLong abortedRequests = new AtomicLong();
 
     /**
      * Creates a new instance, which defaults to the https://notify.bugsnag.com endpoint
@@ -52,16 +72,45 @@ public class SyncHttpDelivery implements HttpDelivery {
         this.timeout = timeout;
     }
 
+    public void setCompression(Compression compression) {
+        this.compression = compression == null ? Compression.NONE : compression;
+    }
+
+    public void setReadTimeout(int readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    public void setDeadline(int deadline) {
+        this.deadline = deadline;
+    }
+
+    /**
+     * @return the number of requests which were aborted because they passed their deadline
+     */
+    public long getAbortedRequestCount() {
+        return abortedRequests.get();
+    }
+
     @Override
     public void deliver(Serializer serializer, Object object, Map<String, String> headers) {
+        deliverWithResult(serializer, object, headers);
+    }
+
+    @Override
+    public DeliveryResult deliverWithResult(Serializer serializer,
+                                            Object object,
+                                            Map<String, String> headers) {
+        String endpoint = this.endpoint;
         if (endpoint == null) {
             LOGGER.warn("Endpoint configured incorrectly, skipping delivery.");
-            return;
+            return DeliveryResult.fromError(DeliveryResult.Status.FAILURE, null);
         }
 
         HttpURLConnection connection = null;
+        DeliveryWatchdog watchdog = null;
+        boolean reusable = false;
         try {
-            URL url = new URL(endpoint);
+            URL url = getUrl(endpoint);
             if (proxy != null) {
                 connection = (HttpURLConnection) url.openConnection(proxy);
             } else {
@@ -71,7 +120,15 @@ public class SyncHttpDelivery implements HttpDelivery {
             connection.setDoOutput(true);
             connection.setRequestMethod("POST");
             connection.setConnectTimeout(timeout);
-            connection.addRequestProperty("Content-Type", "application/json");
+            connection.setReadTimeout(readTimeout);
+            watchdog = DeliveryWatchdog.watch(connection, deadline);
+            connection.addRequestProperty("Content-Type", serializer.getContentType());
+
+            Compression compression = this.compression;
+            if (compression.getContentEncoding() != null) {
+                connection.addRequestProperty("Content-Encoding",
+                        compression.getContentEncoding());
+            }
 
             for (Map.Entry<String, String> entry : headers.entrySet()) {
                 connection.addRequestProperty(entry.getKey(), entry.getValue());
@@ -79,7 +136,7 @@ public class SyncHttpDelivery implements HttpDelivery {
 
             OutputStream outputStream = null;
             try {
-                outputStream = connection.getOutputStream();
+                outputStream = compress(connection.getOutputStream(), compression);
                 serializer.writeToStream(outputStream, object);
             } finally {
                 try {
@@ -97,24 +154,133 @@ public class SyncHttpDelivery implements HttpDelivery {
                 LOGGER.warn(
                         "Error not reported to Bugsnag - got non-200 response code: {}", status);
             }
+            long retryAfterMs = parseRetryAfter(connection.getHeaderField("Retry-After"));
+            reusable = drainResponse(connection, status);
+            return DeliveryResult.fromResponseCode(status, retryAfterMs);
         } catch (MalformedURLException ex) {
             LOGGER.warn("Error not reported to Bugsnag - malformed URL."
                     + " Have you set both endpoints correctly?", ex);
+            return DeliveryResult.fromError(DeliveryResult.Status.FAILURE, ex);
         } catch (SerializationException ex) {
             LOGGER.warn("Error not reported to Bugsnag - exception when serializing payload", ex);
+            return DeliveryResult.fromError(DeliveryResult.Status.FAILURE, ex);
         } catch (UnknownHostException ex) {
             LOGGER.warn("Error not reported to Bugsnag - unknown host {}", endpoint);
+            return DeliveryResult.fromError(DeliveryResult.Status.UNDELIVERED, ex);
         } catch (IOException ex) {
-            LOGGER.warn("Error not reported to Bugsnag - exception when making request", ex);
+            if (watchdog != null && watchdog.isAborted()) {
+                abortedRequests.incrementAndGet();
+                LOGGER.warn("Error not reported to Bugsnag - request aborted after {}ms",
+                        deadline);
+            } else {
+                LOGGER.warn("Error not reported to Bugsnag - exception when making request", ex);
+            }
+            return DeliveryResult.fromError(DeliveryResult.Status.UNDELIVERED, ex);
         } finally {
-            if (connection != null) {
+            if (watchdog != null) {
+                watchdog.cancel();
+            }
+            // Leave the connection open if possible, so that it is kept alive and reused by the
+            // next delivery to the same endpoint rather than paying for a new TLS handshake
+            if (connection != null && (!reusable || watchdog != null && watchdog.isAborted())) {
                 connection.disconnect();
             }
         }
     }
 
+    /**
+     * Wraps the request stream so that the payload is compressed as it is serialized, rather
+     * than buffering an uncompressed copy.
+     */
+    static OutputStream compress(OutputStream outputStream,
+                                 Compression compression) throws IOException {
+        switch (compression) {
+            case GZIP:
+                return new GZIPOutputStream(outputStream, COMPRESSION_BUFFER_SIZE);
+            case DEFLATE:
+                return new DeflaterOutputStream(outputStream);
+            case NONE:
+            default:
+                return outputStream;
+        }
+    }
+
+    // The URL is cached with the endpoint it was parsed from, so that it is parsed again if the
+    // endpoint changes while it is being parsed
+    private URL getUrl(String endpoint) throws MalformedURLException {
+        ParsedUrl current = parsedUrl;
+        if (current == null || !current.endpoint.equals(endpoint)) {
+            current = new ParsedUrl(endpoint, new URL(endpoint));
+            parsedUrl = current;
+        }
+        return current.url;
+    }
+
+    /**
+     * Parses a Retry-After header, which is either a number of seconds or an HTTP date.
+     *
+     * @return the requested delay in ms, or 0 if there is no valid header
+     */
+    static long parseRetryAfter(String value) {
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Math.max(0, Long.parseLong(value.trim()) * 1000);
+        } catch (NumberFormatException ex) {
+            // Not a number of seconds, so try a date
+        }
+        try {
+            SimpleDateFormat format = new SimpleDateFormat(RETRY_AFTER_DATE_FORMAT, Locale.US);
+            format.setTimeZone(TimeZone.getTimeZone("GMT"));
+            return Math.max(0, format.parse(value.trim()).getTime() - System.currentTimeMillis());
+        } catch (ParseException ex) {
+            return 0;
+        }
+    }
+
+    /**
+     * Reads and closes the response body, which allows the underlying connection to be
+     * returned to the keep-alive cache.
+     *
+     * @return true if the connection can be reused
+     */
+    private boolean drainResponse(HttpURLConnection connection, int status) {
+        InputStream inputStream = null;
+        try {
+            inputStream = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+            if (inputStream != null) {
+                byte[] buffer = new byte[DRAIN_BUFFER_SIZE];
+                while (inputStream.read(buffer) != -1) {
+                    // Discard the response body
+                }
+            }
+            return true;
+        } catch (IOException ex) {
+            return false;
+        } finally {
+            try {
+                if (inputStream != null) {
+                    inputStream.close();
+                }
+            } catch (IOException ioe) {
+                // Don't care
+            }
+        }
+    }
+
     @Override
     public void close() {
         // Nothing to do here.
     }
+
+    private static class ParsedUrl {
+        private final String endpoint;
+        private final URL url;
+
+        ParsedUrl(String endpoint, URL url) {
+            this.endpoint = endpoint;
+            this.url = url;
+        }
+    }
 }
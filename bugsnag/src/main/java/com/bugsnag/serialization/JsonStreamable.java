@@ -0,0 +1,22 @@
+package com.bugsnag.serialization;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+
+/**
+ * An object which writes itself as JSON, rather than being serialized by introspecting its
+ * {@link Expose} getters. The output must match what introspection would produce.
+ */
+public interface JsonStreamable {
+
+    /**
+     * Write the object as a JSON value. Values of other types can be written with
+     * {@link JsonGenerator#writeObject(Object)}, which serializes them with the mapper used by
+     * the {@link Serializer}.
+     *
+     * @param generator the generator to write to.
+     * @throws IOException the object could not be written.
+     */
+    void writeJson(JsonGenerator generator) throws IOException;
+}
@@ -1,21 +1,50 @@
 package com.bugsnag.serialization;
 
+import com.bugsnag.util.PooledByteArrayOutputStream;
+
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import java.io.IOException;
 import java.io.OutputStream;
 
 public class Serializer {
-    private ObjectMapper mapper = new ObjectMapper();
+    public static final String JSON_CONTENT_TYPE = "application/json";
+
+    private final ObjectMapper mapper;
+    private final String contentType;
 
     /**
-     * Constructor.
+     * Constructor, which serializes payloads as JSON.
+     */
+    public Serializer() {
+        this(new JsonFactory(), JSON_CONTENT_TYPE);
+    }
+
+    /**
+     * Creates a serializer which writes payloads in another format supported by Jackson, such
+     * as Smile or CBOR, for an endpoint which accepts that format. For example, using the
+     * jackson-dataformat-smile module:
+     *
+     * <pre>
+     * new Serializer(new SmileFactory(), "application/x-jackson-smile")
+     * </pre>
+     *
+     * @param factory     the factory for generators in the format.
+     * @param contentType the content type of the format, sent with each request.
      */
     // Use deprecated method to ensure we don't break with older versions of jackson
     @SuppressWarnings("deprecation")
-    public Serializer() {
+    public Serializer(JsonFactory factory, String contentType) {
+        if (factory == null || contentType == null) {
+            throw new IllegalArgumentException("Factory and content type must not be null");
+        }
+        this.mapper = new ObjectMapper(factory);
+        this.contentType = contentType;
         mapper
             .setSerializationInclusion(JsonInclude.Include.NON_EMPTY)
             .setVisibilityChecker(
@@ -23,7 +52,16 @@ public class Serializer {
     }
 
     /**
-     * Write the object to the stream.
+     * @return the content type of the serialized payloads.
+     */
+    public String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * Write the object to the stream. A byte array is treated as a payload which has already
+     * been serialized, and is written to the stream as-is. A {@link JsonStreamable} object
+     * writes itself, and any other object is serialized from its {@link Expose} getters.
      *
      * @param stream the stream to write the object to.
      * @param object the object to write to the stream.
@@ -31,9 +69,52 @@ public class Serializer {
      */
     public void writeToStream(OutputStream stream, Object object) throws SerializationException {
         try {
+            if (object instanceof byte[]) {
+                stream.write((byte[]) object);
+                return;
+            }
+            if (object instanceof TrimmableJsonStreamable
+                    && ((TrimmableJsonStreamable) object).getMaxBytes() > 0) {
+                writeTrimmed(stream, (TrimmableJsonStreamable) object);
+                return;
+            }
+            if (object instanceof JsonStreamable) {
+                write(stream, (JsonStreamable) object);
+                return;
+            }
             mapper.writeValue(stream, object);
         } catch (IOException ex) {
             throw new SerializationException("Exception during serialization", ex);
         }
     }
+
+    private void write(OutputStream stream, JsonStreamable object) throws IOException {
+        // The generator closes the stream, as the mapper does
+        JsonGenerator generator = mapper.getFactory().createGenerator(stream, JsonEncoding.UTF8);
+        try {
+            object.writeJson(generator);
+        } finally {
+            generator.close();
+        }
+    }
+
+    /**
+     * Writes the object to a buffer, trimming it until it fits within its maximum size or
+     * can't be trimmed any further, then copies the buffer to the stream.
+     */
+    private void writeTrimmed(OutputStream stream, TrimmableJsonStreamable object)
+            throws IOException {
+        PooledByteArrayOutputStream buffer = PooledByteArrayOutputStream.acquire();
+        try {
+            write(buffer, object);
+            while (buffer.size() > object.getMaxBytes() && object.trim(buffer.size())) {
+                buffer.reset();
+                write(buffer, object);
+            }
+            buffer.writeTo(stream);
+        } finally {
+            buffer.release();
+            stream.close();
+        }
+    }
 }
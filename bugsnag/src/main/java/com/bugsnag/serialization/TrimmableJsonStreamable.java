@@ -0,0 +1,22 @@
+package com.bugsnag.serialization;
+
+/**
+ * A {@link JsonStreamable} with a limit on its serialized size, which it meets by leaving out
+ * progressively more of its content. The {@link Serializer} writes it to a buffer first, and
+ * trims it until it fits.
+ */
+public interface TrimmableJsonStreamable extends JsonStreamable {
+
+    /**
+     * @return the maximum size of the serialized object in bytes, or 0 for no limit.
+     */
+    int getMaxBytes();
+
+    /**
+     * Leave out more of the content the next time the object is written.
+     *
+     * @param size the size of the object when it was last written.
+     * @return false if the object can't be trimmed any further.
+     */
+    boolean trim(int size);
+}
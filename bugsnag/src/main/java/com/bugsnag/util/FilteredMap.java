@@ -1,6 +1,5 @@
 package com.bugsnag.util;
 
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
@@ -8,16 +7,29 @@ import java.util.Set;
 
 /**
  * Decorates a map by replacing values of filtered keys.
+ *
+ * <p>This copies the whole map, so reports are serialized by filtering their meta data as it is
+ * written instead. It remains for code which reads the filtered meta data of a report.
  */
 public class FilteredMap implements Map<String, Object> {
 
-    private static final String FILTERED_PLACEHOLDER = "[FILTERED]";
+    public static final String FILTERED_PLACEHOLDER = "[FILTERED]";
 
     private final Map<String, Object> filteredCopy;
-    private final Collection<String> keyFilters = new ArrayList<String>();
+    private final KeyFilter keyFilter;
 
     public FilteredMap(Map<String, Object> map, Collection<String> keyFilters) {
-        this.keyFilters.addAll(keyFilters);
+        this(map, new KeyFilter(keyFilters));
+    }
+
+    /**
+     * Creates a filtered copy of the map, using filters which have already been compiled.
+     *
+     * @param map       the map to copy
+     * @param keyFilter the filter for keys whose values are replaced
+     */
+    public FilteredMap(Map<String, Object> map, KeyFilter keyFilter) {
+        this.keyFilter = keyFilter;
         this.filteredCopy = createCopy(map);
     }
 
@@ -102,21 +114,8 @@ public class FilteredMap implements Map<String, Object> {
     @SuppressWarnings("unchecked")
     private Object transformEntry(Object key, Object value) {
         if (value instanceof Map) {
-            return new FilteredMap((Map<String, Object>) value, keyFilters);
-        }
-        return shouldFilterKey((String) key) ? FILTERED_PLACEHOLDER : value;
-    }
-
-    private boolean shouldFilterKey(String key) {
-        if (keyFilters == null || key == null) {
-            return false;
-        }
-
-        for (String filter : keyFilters) {
-            if (key.contains(filter)) {
-                return true;
-            }
+            return new FilteredMap((Map<String, Object>) value, keyFilter);
         }
-        return false;
+        return keyFilter.matches((String) key) ? FILTERED_PLACEHOLDER : value;
     }
 }
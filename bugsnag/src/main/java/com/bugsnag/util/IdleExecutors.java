@@ -0,0 +1,97 @@
+package com.bugsnag.util;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates executors for background delivery work. Their threads are named, and exit once they
+ * have been idle for the keep-alive time, so that they don't prevent an application which
+ * doesn't close its deliveries from exiting. Work which may never become idle, such as a
+ * task which reschedules itself until an endpoint recovers, can run on daemon threads instead.
+ */
+public final class IdleExecutors {
+
+    private IdleExecutors() {
+    }
+
+    /**
+     * Creates a thread factory which names threads with the prefix and the thread id.
+     *
+     * @param namePrefix the prefix for thread names, such as "bugsnag-batch-delivery-"
+     * @return the thread factory
+     */
+    public static ThreadFactory threadFactory(String namePrefix) {
+        return threadFactory(namePrefix, false);
+    }
+
+    /**
+     * Creates a thread factory which names threads with the prefix and the thread id.
+     *
+     * @param namePrefix the prefix for thread names, such as "bugsnag-batch-delivery-"
+     * @param daemon     whether to create daemon threads, which don't prevent the JVM exiting
+     * @return the thread factory
+     */
+    public static ThreadFactory threadFactory(final String namePrefix, final boolean daemon) {
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = Executors.defaultThreadFactory().newThread(runnable);
+                thread.setName(namePrefix + thread.getId());
+                thread.setDaemon(daemon);
+                return thread;
+            }
+        };
+    }
+
+    /**
+     * Creates an executor for delayed tasks, which runs them on a single thread.
+     *
+     * @param namePrefix  the prefix for thread names
+     * @param keepAliveMs the time the thread waits for a task before exiting (in ms)
+     * @return the executor
+     */
+    public static ScheduledThreadPoolExecutor newScheduledExecutor(String namePrefix,
+                                                                   long keepAliveMs) {
+        return newScheduledExecutor(namePrefix, keepAliveMs, false);
+    }
+
+    /**
+     * Creates an executor for delayed tasks, which runs them on a single thread.
+     *
+     * @param namePrefix  the prefix for thread names
+     * @param keepAliveMs the time the thread waits for a task before exiting (in ms)
+     * @param daemon      whether to run tasks on a daemon thread
+     * @return the executor
+     */
+    public static ScheduledThreadPoolExecutor newScheduledExecutor(String namePrefix,
+                                                                   long keepAliveMs,
+                                                                   boolean daemon) {
+        ScheduledThreadPoolExecutor executor =
+                new ScheduledThreadPoolExecutor(1, threadFactory(namePrefix, daemon));
+        executor.setKeepAliveTime(keepAliveMs, TimeUnit.MILLISECONDS);
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Creates an executor which runs tasks on up to a fixed number of threads, queueing any
+     * tasks submitted while they are all busy.
+     *
+     * @param namePrefix  the prefix for thread names
+     * @param threadCount the maximum number of threads
+     * @param keepAliveMs the time a thread waits for a task before exiting (in ms)
+     * @return the executor
+     */
+    public static ThreadPoolExecutor newFixedExecutor(String namePrefix, int threadCount,
+                                                      long keepAliveMs) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threadCount, threadCount,
+                keepAliveMs, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+                threadFactory(namePrefix));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
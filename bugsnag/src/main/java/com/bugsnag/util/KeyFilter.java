@@ -0,0 +1,168 @@
+package com.bugsnag.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.regex.Pattern;
+
+/**
+ * Matches keys which contain any of a set of filters, such as "password". The filters are
+ * compiled into an Aho-Corasick automaton, so a key is checked against all of them in a single
+ * pass over its characters, however many filters there are. Instances are immutable, and can
+ * be shared between threads.
+ *
+ * <p>A filter starting with {@code regex:} is a regular expression, which matches keys
+ * containing a match for it, and a filter starting with {@code glob:} is a pattern which
+ * matches whole keys, where {@code *} matches any characters and {@code ?} matches a single
+ * character. These are checked after the plain filters.
+ */
+public final class KeyFilter {
+
+    private static final String REGEX_PREFIX = "regex:";
+    private static final String GLOB_PREFIX = "glob:";
+
+    private final State root = new State();
+    private final List<Pattern> patterns = new ArrayList<Pattern>();
+
+    /**
+     * Compiles the filters.
+     *
+     * @param filters the filters for keys, which may contain nulls
+     * @throws java.util.regex.PatternSyntaxException if a regular expression is invalid
+     */
+    public KeyFilter(Collection<String> filters) {
+        if (filters == null) {
+            return;
+        }
+        for (String filter : filters) {
+            if (filter == null) {
+                continue;
+            } else if (filter.startsWith(REGEX_PREFIX)) {
+                patterns.add(Pattern.compile(filter.substring(REGEX_PREFIX.length())));
+            } else if (filter.startsWith(GLOB_PREFIX)) {
+                patterns.add(compileGlob(filter.substring(GLOB_PREFIX.length())));
+            } else {
+                add(filter);
+            }
+        }
+        link();
+    }
+
+    /**
+     * Compiles the filters.
+     *
+     * @param filters the filters for keys, which may contain nulls
+     * @return the compiled filters
+     * @throws java.util.regex.PatternSyntaxException if a regular expression is invalid
+     */
+    public static KeyFilter compile(String... filters) {
+        return new KeyFilter(filters == null ? null : Arrays.asList(filters));
+    }
+
+    private static Pattern compileGlob(String glob) {
+        StringBuilder regex = new StringBuilder("^");
+        int start = 0;
+        for (int index = 0; index < glob.length(); index++) {
+            char character = glob.charAt(index);
+            if (character == '*' || character == '?') {
+                if (index > start) {
+                    regex.append(Pattern.quote(glob.substring(start, index)));
+                }
+                regex.append(character == '*' ? ".*" : ".");
+                start = index + 1;
+            }
+        }
+        if (start < glob.length()) {
+            regex.append(Pattern.quote(glob.substring(start)));
+        }
+        return Pattern.compile(regex.append('$').toString(), Pattern.DOTALL);
+    }
+
+    private void add(String filter) {
+        State state = root;
+        for (int index = 0; index < filter.length(); index++) {
+            Character key = filter.charAt(index);
+            State next = state.next.get(key);
+            if (next == null) {
+                next = new State();
+                state.next.put(key, next);
+            }
+            state = next;
+        }
+        state.match = true;
+    }
+
+    // Links each state to the longest proper suffix of it which is also a state, breadth first
+    private void link() {
+        Queue<State> queue = new LinkedList<State>();
+        for (State child : root.next.values()) {
+            child.fail = root;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            State state = queue.remove();
+            for (Map.Entry<Character, State> entry : state.next.entrySet()) {
+                State child = entry.getValue();
+                State fail = state.fail;
+                while (fail != root && !fail.next.containsKey(entry.getKey())) {
+                    fail = fail.fail;
+                }
+                State target = fail.next.get(entry.getKey());
+                child.fail = target != null ? target : root;
+                child.match |= child.fail.match;
+                queue.add(child);
+            }
+        }
+    }
+
+    /**
+     * @param key the key to check, which may be null
+     * @return true if the key contains any of the filters
+     */
+    public boolean matches(String key) {
+        if (key == null) {
+            return false;
+        }
+        return containsFilter(key) || matchesPattern(key);
+    }
+
+    private boolean containsFilter(String key) {
+        State state = root;
+        if (state.match) {
+            return true;
+        }
+        for (int index = 0; index < key.length(); index++) {
+            char character = key.charAt(index);
+            State next = state.next.get(character);
+            while (next == null && state != root) {
+                state = state.fail;
+                next = state.next.get(character);
+            }
+            state = next == null ? root : next;
+            if (state.match) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean matchesPattern(String key) {
+        for (Pattern pattern : patterns) {
+            if (pattern.matcher(key).find()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static class State {
+        private final Map<Character, State> next = new HashMap<Character, State>();
+        private State fail;
+        private boolean match;
+    }
+}
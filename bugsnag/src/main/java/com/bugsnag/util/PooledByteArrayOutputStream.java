@@ -0,0 +1,63 @@
+package com.bugsnag.util;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A byte array output stream whose buffer is reused once it has been released, so that
+ * serializing payloads in the steady state doesn't allocate and grow a new buffer each time.
+ * The pool is shared by all threads, which works for virtual threads as well as a fixed pool.
+ *
+ * <pre>
+ * PooledByteArrayOutputStream stream = PooledByteArrayOutputStream.acquire();
+ * try {
+ *     serializer.writeToStream(stream, object);
+ *     return stream.toByteArray();
+ * } finally {
+ *     stream.release();
+ * }
+ * </pre>
+ */
+public final class PooledByteArrayOutputStream extends ByteArrayOutputStream {
+    private static final int INITIAL_SIZE = 8192;
+    private static final int MAX_POOLED_SIZE = 1024 * 1024;
+    private static final int MAX_POOLED_STREAMS = 16;
+
+    private static final Queue<PooledByteArrayOutputStream> POOL =
+            new ConcurrentLinkedQueue<PooledByteArrayOutputStream>();
+    private static final AtomicInteger POOLED_STREAMS = new AtomicInteger();
+
+    private PooledByteArrayOutputStream() {
+        super(INITIAL_SIZE);
+    }
+
+    /**
+     * @return an empty stream, reusing a released one if possible
+     */
+    public static PooledByteArrayOutputStream acquire() {
+        PooledByteArrayOutputStream stream = POOL.poll();
+        if (stream == null) {
+            return new PooledByteArrayOutputStream();
+        }
+        POOLED_STREAMS.decrementAndGet();
+        return stream;
+    }
+
+    /**
+     * Returns the stream to the pool. The stream must not be used afterwards. Streams which
+     * have grown very large are discarded, rather than holding on to the memory.
+     */
+    public void release() {
+        if (buf.length > MAX_POOLED_SIZE) {
+            return;
+        }
+        if (POOLED_STREAMS.incrementAndGet() > MAX_POOLED_STREAMS) {
+            POOLED_STREAMS.decrementAndGet();
+            return;
+        }
+        reset();
+        POOL.offer(this);
+    }
+}
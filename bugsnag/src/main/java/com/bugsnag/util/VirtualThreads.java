@@ -0,0 +1,78 @@
+package com.bugsnag.util;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * Creates virtual threads when running on Java 21 or later. Virtual threads are cheap to
+ * block, so background work which spends most of its time waiting on the network can use
+ * many of them without reserving a platform thread stack for each.
+ *
+ * <p>This library is built for Java 6, so virtual threads are created through reflection.
+ * Virtual threads are always daemon threads.
+ */
+public final class VirtualThreads {
+
+    private static final Method OF_VIRTUAL;
+    private static final Method UNSTARTED;
+
+    static {
+        Method ofVirtual = null;
+        Method unstarted = null;
+        try {
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            unstarted = Class.forName("java.lang.Thread$Builder")
+                    .getMethod("unstarted", Runnable.class);
+
+            // Java 19 and 20 have virtual threads as a preview feature, which throws unless
+            // preview features are enabled, so create one to check that they are available
+            unstarted.invoke(ofVirtual.invoke(null), new Runnable() {
+                @Override
+                public void run() {
+                }
+            });
+        } catch (ClassNotFoundException ex) {
+            ofVirtual = null;
+        } catch (NoSuchMethodException ex) {
+            ofVirtual = null;
+        } catch (IllegalAccessException ex) {
+            ofVirtual = null;
+        } catch (InvocationTargetException ex) {
+            ofVirtual = null;
+        } catch (RuntimeException ex) {
+            ofVirtual = null;
+        }
+        OF_VIRTUAL = ofVirtual;
+        UNSTARTED = unstarted;
+    }
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * @return true if this version of Java supports virtual threads, and they are enabled
+     */
+    public static boolean isSupported() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * Creates a virtual thread, which has not been started.
+     *
+     * @param runnable the task for the thread to run
+     * @return the new thread
+     * @throws UnsupportedOperationException if virtual threads are not supported
+     */
+    public static Thread newThread(Runnable runnable) {
+        if (!isSupported()) {
+            throw new UnsupportedOperationException("Virtual threads require Java 21 or later");
+        }
+        try {
+            return (Thread) UNSTARTED.invoke(OF_VIRTUAL.invoke(null), runnable);
+        } catch (IllegalAccessException ex) {
+            throw new IllegalStateException("Unable to create virtual thread", ex);
+        } catch (InvocationTargetException ex) {
+            throw new IllegalStateException("Unable to create virtual thread", ex.getCause());
+        }
+    }
+}
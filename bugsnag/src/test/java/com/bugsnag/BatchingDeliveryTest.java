@@ -0,0 +1,165 @@
+package com.bugsnag;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.bugsnag.delivery.Delivery;
+import com.bugsnag.serialization.Serializer;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+public class BatchingDeliveryTest {
+
+    private static final Map<String, String> HEADERS = Collections.emptyMap();
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private Configuration config;
+    private RecordingDelivery baseDelivery;
+    private BatchingDelivery delivery;
+
+    /**
+     * Creates a batching delivery which records the payloads it sends
+     */
+    @Before
+    public void setUp() {
+        config = new Configuration("api-key");
+        baseDelivery = new RecordingDelivery();
+        delivery = new BatchingDelivery(baseDelivery);
+        delivery.setLingerMs(60000);
+    }
+
+    @Test
+    public void testBatchSentWhenFull() throws IOException, InterruptedException {
+        delivery.setMaxEvents(3);
+        for (int k = 0; k < 3; k++) {
+            delivery.deliver(config.serializer, notification(null), HEADERS);
+        }
+
+        List<JsonNode> payloads = baseDelivery.awaitPayloads(1);
+        assertEquals(1, payloads.size());
+        assertEquals("api-key", payloads.get(0).get("apiKey").asText());
+        assertEquals(3, payloads.get(0).get("events").size());
+        delivery.close();
+    }
+
+    @Test
+    public void testBatchSentAfterLinger() throws IOException, InterruptedException {
+        delivery.setLingerMs(10);
+        delivery.deliver(config.serializer, notification(null), HEADERS);
+        delivery.deliver(config.serializer, notification(null), HEADERS);
+
+        List<JsonNode> payloads = baseDelivery.awaitPayloads(1);
+        assertEquals(2, payloads.get(0).get("events").size());
+        delivery.close();
+    }
+
+    @Test
+    public void testBatchesGroupedByApiKey() throws IOException {
+        delivery.deliver(config.serializer, notification(null), HEADERS);
+        delivery.deliver(config.serializer, notification("other-key"), HEADERS);
+        delivery.deliver(config.serializer, notification(null), HEADERS);
+        delivery.close();
+
+        List<JsonNode> payloads = baseDelivery.getPayloads();
+        assertEquals(2, payloads.size());
+        for (JsonNode payload : payloads) {
+            int expected = "api-key".equals(payload.get("apiKey").asText()) ? 2 : 1;
+            assertEquals(expected, payload.get("events").size());
+        }
+    }
+
+    @Test
+    public void testBatchSentBeforeExceedingSize() throws IOException, InterruptedException {
+        long reportBytes = BatchingDelivery.estimateSize(notification(null).getEvents().get(0));
+        delivery.setMaxBatchBytes((int) (reportBytes * 5 / 2));
+        for (int k = 0; k < 3; k++) {
+            delivery.deliver(config.serializer, notification(null), HEADERS);
+        }
+
+        // the third report doesn't fit, so the first two are sent without waiting
+        List<JsonNode> payloads = baseDelivery.awaitPayloads(1);
+        assertEquals(1, payloads.size());
+        assertEquals(2, payloads.get(0).get("events").size());
+
+        delivery.close();
+        payloads = baseDelivery.getPayloads();
+        assertEquals(2, payloads.size());
+        assertEquals(1, payloads.get(1).get("events").size());
+    }
+
+    @Test
+    public void testLargeBatchSplit() throws IOException {
+        delivery.setMaxBatchBytes(1);
+        for (int k = 0; k < 3; k++) {
+            delivery.deliver(config.serializer, notification(null), HEADERS);
+        }
+        delivery.close();
+
+        List<JsonNode> payloads = baseDelivery.getPayloads();
+        assertEquals(3, payloads.size());
+        for (JsonNode payload : payloads) {
+            assertEquals(1, payload.get("events").size());
+        }
+    }
+
+    @Test
+    public void testOtherPayloadsNotBatched() {
+        Object payload = new Object();
+        delivery.deliver(config.serializer, payload, HEADERS);
+        assertSame(payload, baseDelivery.objects.get(0));
+        delivery.close();
+    }
+
+    private Notification notification(String apiKey) {
+        Report report = new Report(config, new RuntimeException());
+        report.setApiKey(apiKey);
+        return new Notification(config, report);
+    }
+
+    private class RecordingDelivery implements Delivery {
+        final List<Object> objects = Collections.synchronizedList(new ArrayList<Object>());
+
+        @Override
+        public void deliver(Serializer serializer, Object object, Map<String, String> headers) {
+            synchronized (objects) {
+                objects.add(object);
+                objects.notifyAll();
+            }
+        }
+
+        @Override
+        public void close() {
+        }
+
+        List<JsonNode> awaitPayloads(int count) throws IOException, InterruptedException {
+            synchronized (objects) {
+                long end = System.currentTimeMillis() + 5000;
+                while (objects.size() < count && System.currentTimeMillis() < end) {
+                    objects.wait(100);
+                }
+            }
+            return getPayloads();
+        }
+
+        List<JsonNode> getPayloads() throws IOException {
+            List<JsonNode> payloads = new ArrayList<JsonNode>();
+            synchronized (objects) {
+                for (Object object : objects) {
+                    assertTrue(object instanceof byte[]);
+                    payloads.add(mapper.readTree((byte[]) object));
+                }
+            }
+            return payloads;
+        }
+    }
+}
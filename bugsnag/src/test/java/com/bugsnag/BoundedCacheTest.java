@@ -0,0 +1,53 @@
+package com.bugsnag;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class BoundedCacheTest {
+
+    @Test
+    public void testGetAndPut() {
+        BoundedCache<String, Integer> cache = new BoundedCache<String, Integer>(4);
+        assertNull(cache.get("a"));
+        cache.put("a", 1);
+        assertEquals(Integer.valueOf(1), cache.get("a"));
+    }
+
+    @Test
+    public void testPutIfAbsent() {
+        BoundedCache<String, Integer> cache = new BoundedCache<String, Integer>(4);
+        assertNull(cache.putIfAbsent("a", 1));
+        assertEquals(Integer.valueOf(1), cache.putIfAbsent("a", 2));
+        assertEquals(Integer.valueOf(1), cache.get("a"));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedDiscarded() {
+        BoundedCache<String, Integer> cache = new BoundedCache<String, Integer>(4);
+        cache.put("a", 1);
+        cache.put("b", 2);
+
+        // "a" is used again in the next generation, "b" isn't
+        assertEquals(Integer.valueOf(1), cache.get("a"));
+        cache.put("c", 3);
+        cache.put("d", 4);
+
+        assertEquals(Integer.valueOf(1), cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals(Integer.valueOf(4), cache.get("d"));
+    }
+
+    @Test
+    public void testSizeBounded() {
+        BoundedCache<Integer, Integer> cache = new BoundedCache<Integer, Integer>(4);
+        for (int k = 0; k < 100; k++) {
+            cache.put(k, k);
+        }
+        assertNull(cache.get(0));
+        assertNull(cache.get(95));
+        assertEquals(Integer.valueOf(98), cache.get(98));
+        assertEquals(Integer.valueOf(99), cache.get(99));
+    }
+}
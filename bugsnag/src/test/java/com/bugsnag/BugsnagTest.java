@@ -7,6 +7,7 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import com.bugsnag.callbacks.Callback;
+import com.bugsnag.delivery.Compression;
 import com.bugsnag.delivery.Delivery;
 import com.bugsnag.delivery.HttpDelivery;
 import com.bugsnag.delivery.OutputStreamDelivery;
@@ -17,11 +18,13 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.Proxy;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.regex.PatternSyntaxException;
 
 
 public class BugsnagTest {
@@ -72,6 +75,21 @@ public class BugsnagTest {
         assertFalse(bugsnag.notify(new TestException()));
     }
 
+    @Test
+    public void testIgnoreSubclassesAndCauses() {
+        bugsnag.setDelivery(BugsnagTestUtils.generateDelivery());
+        bugsnag.setIgnoreClasses(RuntimeException.class.getName());
+
+        bugsnag.setIgnoreSubclasses(true);
+        assertFalse(bugsnag.notify(new TestException()));
+        assertTrue(bugsnag.notify(new IOException(new TestException())));
+
+        bugsnag.setIgnoreCauses(true);
+        assertFalse(bugsnag.notify(new IOException(new TestException())));
+        assertFalse(bugsnag.notify(bugsnag.buildReport(new IOException(new TestException()))));
+        assertTrue(bugsnag.notify(new IOException(new IOException())));
+    }
+
     @Test
     public void testNotifyReleaseStages() {
         bugsnag.setDelivery(BugsnagTestUtils.generateDelivery());
@@ -163,6 +181,122 @@ public class BugsnagTest {
         assertTrue(bugsnag.notify(new Throwable(), Severity.INFO));
     }
 
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testRateLimit() {
+        StubNotificationDelivery delivery = new StubNotificationDelivery();
+        bugsnag.setDelivery(delivery);
+        bugsnag.setRateLimit(2);
+        assertTrue(bugsnag.notify(new RuntimeException()));
+        assertTrue(bugsnag.notify(new RuntimeException(), Severity.INFO));
+        assertFalse(bugsnag.notify(new RuntimeException()));
+        assertFalse(bugsnag.notify(bugsnag.buildReport(new RuntimeException())));
+        assertEquals(2, delivery.getNotifications().size());
+
+        // The next report sent records how many were dropped
+        bugsnag.setRateLimit(0);
+        assertTrue(bugsnag.notify(new RuntimeException()));
+        Report report = delivery.getNotifications().get(2).getEvents().get(0);
+        Map<String, Object> tab =
+                (Map<String, Object>) report.getMetaData().get(Bugsnag.RATE_LIMIT_TAB);
+        assertEquals(2L, tab.get("suppressedReports"));
+    }
+
+    @Test
+    public void testIgnoredErrorsRejectedEarly() {
+        StubNotificationDelivery delivery = new StubNotificationDelivery();
+        bugsnag.setDelivery(delivery);
+        bugsnag.setRateLimit(1);
+        bugsnag.setIgnoreClasses(RuntimeException.class.getName());
+        final int[] callbacks = new int[1];
+        bugsnag.addCallback(new Callback() {
+            @Override
+            public void beforeNotify(Report report) {
+                callbacks[0]++;
+            }
+        });
+
+        // Ignored errors don't run callbacks or use up the rate limit
+        assertFalse(bugsnag.notify(new RuntimeException()));
+        assertFalse(bugsnag.notify(new RuntimeException(), Severity.INFO));
+        assertEquals(0, callbacks[0]);
+
+        bugsnag.setIgnoreClasses();
+        assertTrue(bugsnag.notify(new RuntimeException()));
+        assertEquals(1, callbacks[0]);
+        Report report = delivery.getNotifications().get(0).getEvents().get(0);
+        assertNull(report.getMetaData().get(Bugsnag.RATE_LIMIT_TAB));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testSampling() {
+        StubNotificationDelivery delivery = new StubNotificationDelivery();
+        bugsnag.setDelivery(delivery);
+        bugsnag.setSampleRate(Severity.INFO, 0.5);
+
+        // Find errors which are kept and dropped at the rate
+        RuntimeException kept = null;
+        RuntimeException dropped = null;
+        for (int k = 0; kept == null || dropped == null; k++) {
+            RuntimeException exception = SamplerTest.exception("method" + k);
+            if (Sampler.isSampled(exception, 0.5)) {
+                kept = exception;
+            } else {
+                dropped = exception;
+            }
+        }
+
+        assertFalse(bugsnag.notify(dropped, Severity.INFO));
+        assertTrue(bugsnag.notify(dropped, Severity.WARNING));
+        assertTrue(bugsnag.notify(kept, Severity.INFO));
+        assertEquals(2, delivery.getNotifications().size());
+
+        Report report = delivery.getNotifications().get(1).getEvents().get(0);
+        Map<String, Object> tab = (Map<String, Object>) report.getMetaData().get("sampling");
+        assertEquals(0.5, tab.get("sampleRate"));
+
+        // The severity set by a callback is sampled after the report is built
+        assertFalse(bugsnag.notify(dropped, new Callback() {
+            @Override
+            public void beforeNotify(Report report) {
+                report.setSeverity(Severity.INFO);
+            }
+        }));
+
+        // Unhandled errors are never sampled
+        bugsnag.setErrorClassSampleRate(RuntimeException.class.getName(), 0);
+        assertFalse(bugsnag.notify(kept));
+        assertTrue(bugsnag.notify(kept, HandledState.newInstance(
+                HandledState.SeverityReasonType.REASON_UNHANDLED_EXCEPTION),
+                Thread.currentThread()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidSampleRate() {
+        bugsnag.setSampleRate(Severity.INFO, 1.5);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeRateLimit() {
+        bugsnag.setErrorClassRateLimit(-1);
+    }
+
+    @Test
+    public void testFilterPatterns() {
+        bugsnag.setFilters("regex:^card_\\d+$", "glob:*_token");
+        Report report = bugsnag.buildReport(new Throwable());
+        assertTrue(report.isFilteredKey("card_1234"));
+        assertTrue(report.isFilteredKey("session_token"));
+        assertFalse(report.isFilteredKey("card_number"));
+        assertFalse(report.isFilteredKey("session_token_count"));
+    }
+
+    @Test(expected = PatternSyntaxException.class)
+    public void testInvalidFilterPattern() {
+        bugsnag.setFilters("regex:[");
+    }
+
     @Test
     public void testFilters() {
         bugsnag.setFilters("testfilter1", "testfilter2");
@@ -419,6 +553,18 @@ public class BugsnagTest {
         assertTrue(bugsnag.notify(new Throwable()));
     }
 
+    @Test
+    public void testSettingsSkipPlainHttpDelivery() {
+        // Deliveries which only implement HttpDelivery are left alone
+        bugsnag.setDelivery(new StubNotificationDelivery());
+        bugsnag.setSessionDelivery(new StubSessionDelivery());
+        bugsnag.setCompression(Compression.GZIP);
+        bugsnag.setReadTimeout(1000);
+        bugsnag.setDeadline(1000);
+
+        assertTrue(bugsnag.notify(new Throwable()));
+    }
+
     @Test
     public void testProxy() {
         bugsnag.setDelivery(new HttpDelivery() {
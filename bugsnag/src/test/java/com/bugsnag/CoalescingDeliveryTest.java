@@ -0,0 +1,217 @@
+package com.bugsnag;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.bugsnag.delivery.Delivery;
+import com.bugsnag.serialization.Serializer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+public class CoalescingDeliveryTest {
+
+    private static final Map<String, String> HEADERS = Collections.emptyMap();
+
+    private Configuration config;
+    private RecordingDelivery baseDelivery;
+    private CoalescingDelivery delivery;
+    private RuntimeException exception;
+
+    /**
+     * Creates a coalescing delivery which records the notifications it sends
+     */
+    @Before
+    public void setUp() {
+        config = new Configuration("api-key");
+        config.projectPackages = new String[]{"com.bugsnag"};
+        baseDelivery = new RecordingDelivery();
+        delivery = new CoalescingDelivery(baseDelivery);
+        delivery.setWindowMs(60000);
+        delivery.setMaxHoldMs(60000);
+
+        // Reports of the same exception have the same stackframes wherever they are delivered
+        exception = new RuntimeException();
+    }
+
+    @Test
+    public void testDuplicatesCollapsed() {
+        for (int k = 0; k < 5; k++) {
+            delivery.deliver(config.serializer, notification("context"), HEADERS);
+        }
+        assertEquals(0, baseDelivery.objects.size());
+        delivery.close();
+
+        assertEquals(1, baseDelivery.objects.size());
+        assertEquals(5, getOccurrences(baseDelivery.objects.get(0)));
+        assertEquals(4, delivery.getDuplicateCount());
+    }
+
+    @Test
+    public void testSingleReportHasNoCount() {
+        delivery.deliver(config.serializer, notification("context"), HEADERS);
+        delivery.close();
+
+        Report report = ((Notification) baseDelivery.objects.get(0)).getEvents().get(0);
+        assertFalse(report.getMetaData().containsKey(CoalescingDelivery.COALESCING_TAB));
+    }
+
+    @Test
+    public void testDifferentReportsNotCollapsed() {
+        for (int k = 0; k < 4; k++) {
+            delivery.deliver(config.serializer, notification("context" + k % 2), HEADERS);
+        }
+        delivery.deliver(config.serializer, notification("context0", new IllegalStateException()),
+                HEADERS);
+        delivery.close();
+
+        assertEquals(3, baseDelivery.objects.size());
+        assertEquals(2, delivery.getDuplicateCount());
+    }
+
+    @Test
+    public void testDifferentSitesNotCollapsedWithoutProjectPackages() {
+        config.projectPackages = null;
+        delivery.deliver(config.serializer,
+                notification("context", exception("com.example.Foo", "first")), HEADERS);
+        delivery.deliver(config.serializer,
+                notification("context", exception("com.example.Bar", "second")), HEADERS);
+        delivery.deliver(config.serializer,
+                notification("context", exception("com.example.Bar", "second")), HEADERS);
+        delivery.close();
+
+        assertEquals(2, baseDelivery.objects.size());
+        assertEquals(1, delivery.getDuplicateCount());
+    }
+
+    @Test
+    public void testReportSentAfterWindow() throws InterruptedException {
+        delivery.setWindowMs(100);
+        delivery.deliver(config.serializer, notification("context"), HEADERS);
+        delivery.deliver(config.serializer, notification("context"), HEADERS);
+
+        baseDelivery.awaitObjects(1);
+        assertEquals(2, getOccurrences(baseDelivery.objects.get(0)));
+
+        // A new window starts after the report is sent
+        delivery.deliver(config.serializer, notification("context"), HEADERS);
+        baseDelivery.awaitObjects(2);
+        assertEquals(2, baseDelivery.objects.size());
+        delivery.close();
+    }
+
+    @Test
+    public void testDuplicateExtendsWindow() throws InterruptedException {
+        delivery.setWindowMs(300);
+        for (int k = 0; k < 4; k++) {
+            delivery.deliver(config.serializer, notification("context"), HEADERS);
+            Thread.sleep(100);
+        }
+
+        // Each duplicate arrived before the window since the previous one ended
+        assertEquals(0, baseDelivery.objects.size());
+        baseDelivery.awaitObjects(1);
+        assertEquals(4, getOccurrences(baseDelivery.objects.get(0)));
+        delivery.close();
+    }
+
+    @Test
+    public void testReportSentAfterMaxHold() throws InterruptedException {
+        delivery.setWindowMs(200);
+        delivery.setMaxHoldMs(300);
+        long end = System.currentTimeMillis() + 1000;
+        while (System.currentTimeMillis() < end) {
+            delivery.deliver(config.serializer, notification("context"), HEADERS);
+            Thread.sleep(20);
+        }
+        assertTrue(baseDelivery.objects.size() >= 2);
+        delivery.close();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidWindow() {
+        delivery.setWindowMs(0);
+    }
+
+    @Test
+    public void testLeastRecentlyDuplicatedSentWhenFull() {
+        delivery.setMaxFingerprints(2);
+        delivery.deliver(config.serializer, notification("first"), HEADERS);
+        delivery.deliver(config.serializer, notification("second"), HEADERS);
+        delivery.deliver(config.serializer, notification("first"), HEADERS);
+        delivery.deliver(config.serializer, notification("third"), HEADERS);
+
+        assertEquals(1, baseDelivery.objects.size());
+        Report report = ((Notification) baseDelivery.objects.get(0)).getEvents().get(0);
+        assertEquals("second", report.getContext());
+        delivery.close();
+        assertEquals(3, baseDelivery.objects.size());
+    }
+
+    @Test
+    public void testOtherPayloadsNotCoalesced() {
+        Object payload = new Object();
+        delivery.deliver(config.serializer, payload, HEADERS);
+        delivery.deliver(config.serializer, payload, HEADERS);
+        assertEquals(2, baseDelivery.objects.size());
+        assertSame(payload, baseDelivery.objects.get(0));
+        delivery.close();
+    }
+
+    private Notification notification(String context) {
+        return notification(context, exception);
+    }
+
+    private Notification notification(String context, Throwable throwable) {
+        Report report = new Report(config, throwable);
+        report.setContext(context);
+        return new Notification(config, report);
+    }
+
+    private static RuntimeException exception(String className, String methodName) {
+        RuntimeException exception = new RuntimeException();
+        exception.setStackTrace(new StackTraceElement[]{
+            new StackTraceElement(className, methodName, "Example.java", 1)});
+        return exception;
+    }
+
+    @SuppressWarnings("unchecked")
+    private int getOccurrences(Object object) {
+        Report report = ((Notification) object).getEvents().get(0);
+        Map<String, Object> tab =
+                (Map<String, Object>) report.getMetaData().get(CoalescingDelivery.COALESCING_TAB);
+        return (Integer) tab.get("occurrences");
+    }
+
+    private static class RecordingDelivery implements Delivery {
+        final List<Object> objects = Collections.synchronizedList(new ArrayList<Object>());
+
+        @Override
+        public void deliver(Serializer serializer, Object object, Map<String, String> headers) {
+            synchronized (objects) {
+                objects.add(object);
+                objects.notifyAll();
+            }
+        }
+
+        @Override
+        public void close() {
+        }
+
+        void awaitObjects(int count) throws InterruptedException {
+            synchronized (objects) {
+                long end = System.currentTimeMillis() + 5000;
+                while (objects.size() < count && System.currentTimeMillis() < end) {
+                    objects.wait(100);
+                }
+            }
+        }
+    }
+}
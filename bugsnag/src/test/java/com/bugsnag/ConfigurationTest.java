@@ -14,6 +14,7 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.PrintStream;
 import java.net.Proxy;
 import java.util.LinkedList;
@@ -41,6 +42,55 @@ public class ConfigurationTest {
         assertTrue(config.shouldAutoCaptureSessions());
     }
 
+    @Test
+    public void testInProject() {
+        assertFalse(config.inProject("com.example.Foo"));
+
+        config.projectPackages = new String[]{null, "com.example", "com.exam", "org.foo."};
+        assertTrue(config.inProject("com.example.Foo"));
+        assertTrue(config.inProject("com.examine.Foo"));
+        assertTrue(config.inProject("org.foo.Bar"));
+        assertFalse(config.inProject("org.foobar.Bar"));
+        assertFalse(config.inProject("com.exa"));
+        assertFalse(config.inProject("com.other.Foo"));
+
+        // cached lookups are discarded when the packages are replaced
+        config.projectPackages = new String[]{"com.other"};
+        assertFalse(config.inProject("com.example.Foo"));
+        assertTrue(config.inProject("com.other.Foo"));
+
+        config.projectPackages = new String[]{""};
+        assertTrue(config.inProject("com.example.Foo"));
+    }
+
+    @Test
+    public void testShouldIgnoreClass() {
+        IllegalStateException exception = new IllegalStateException();
+        String name = exception.getClass().getName();
+        assertFalse(config.shouldIgnoreClass(name, exception));
+
+        config.ignoreClasses = new String[]{RuntimeException.class.getName()};
+        assertTrue(config.shouldIgnoreClass(RuntimeException.class.getName(), null));
+        assertFalse(config.shouldIgnoreClass(name, exception));
+
+        // cached decisions are discarded when subclasses are matched
+        config.ignoreSubclasses = true;
+        assertTrue(config.shouldIgnoreClass(name, exception));
+        assertFalse(config.shouldIgnoreClass(name, null));
+        assertFalse(config.shouldIgnoreClass("java.io.IOException", new IOException()));
+
+        // causes are only matched when enabled
+        IOException wrapper = new IOException(exception);
+        assertFalse(config.shouldIgnoreClass("java.io.IOException", wrapper));
+        config.ignoreCauses = true;
+        assertTrue(config.shouldIgnoreClass("java.io.IOException", wrapper));
+
+        config.ignoreSubclasses = false;
+        assertFalse(config.shouldIgnoreClass("java.io.IOException", wrapper));
+        assertTrue(config.shouldIgnoreClass("java.io.IOException",
+                new IOException(new RuntimeException())));
+    }
+
     @Test
     public void testErrorApiHeaders() {
         Map<String, String> headers = config.getErrorApiHeaders();
@@ -0,0 +1,136 @@
+package com.bugsnag;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.bugsnag.serialization.Serializer;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+
+public class PayloadTrimmingTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Serializer serializer = new Serializer();
+    private Configuration config;
+    private Report report;
+
+    /**
+     * Creates a report with thread state, a deep stacktrace and a large metadata value
+     */
+    @Before
+    public void setUp() {
+        config = new Configuration("api-key");
+        config.sendThreads = true;
+        config.maxPayloadBytes = 0;
+
+        RuntimeException exception = new RuntimeException();
+        StackTraceElement[] stacktrace = new StackTraceElement[1000];
+        for (int index = 0; index < stacktrace.length; index++) {
+            stacktrace[index] = new StackTraceElement("com.example.Foo", "method" + index,
+                    "Foo.java", index);
+        }
+        exception.setStackTrace(stacktrace);
+        report = new Report(config, exception);
+
+        StringBuilder value = new StringBuilder();
+        while (value.length() < 100000) {
+            value.append("0123456789");
+        }
+        report.addToTab("tab", "large", value.toString());
+        report.addToTab("tab", "small", "value");
+    }
+
+    @Test
+    public void testNoLimit() throws Throwable {
+        JsonNode event = serialize(0).get("events").get(0);
+        assertEquals(1000, event.get("exceptions").get(0).get("stacktrace").size());
+        assertTrue(event.get("threads").get(0).has("stacktrace"));
+        assertNull(event.get("metaData").get(Notification.TRIMMING_TAB));
+    }
+
+    @Test
+    public void testTrimThreadStacks() throws Throwable {
+        // any limit below the full size drops the thread stacks first
+        int untrimmed = size(0);
+        JsonNode event = serialize(untrimmed - 1).get("events").get(0);
+        for (JsonNode thread : event.get("threads")) {
+            assertFalse(thread.has("stacktrace"));
+            assertTrue(thread.has("name"));
+        }
+        assertEquals(1000, event.get("exceptions").get(0).get("stacktrace").size());
+        assertEquals(100000, event.get("metaData").get("tab").get("large").asText().length());
+
+        JsonNode trimming = event.get("metaData").get(Notification.TRIMMING_TAB);
+        assertEquals("[\"threadStacks\"]", trimming.get("trimmed").toString());
+        assertEquals(untrimmed, trimming.get("originalBytes").asInt());
+    }
+
+    @Test
+    public void testTrimMetaDataValues() throws Throwable {
+        JsonNode event = serialize(size(0) - 95000).get("events").get(0);
+        String large = event.get("metaData").get("tab").get("large").asText();
+        assertEquals("***98976 CHARS TRUNCATED***", large.substring(1024));
+        assertEquals("value", event.get("metaData").get("tab").get("small").asText());
+        assertEquals(1000, event.get("exceptions").get(0).get("stacktrace").size());
+
+        JsonNode trimming = event.get("metaData").get(Notification.TRIMMING_TAB);
+        assertEquals("[\"threadStacks\",\"metaDataValues\"]", trimming.get("trimmed").toString());
+    }
+
+    @Test
+    public void testTrimStackframes() throws Throwable {
+        int limit = 1000;
+        JsonNode event = serialize(limit).get("events").get(0);
+        JsonNode stacktrace = event.get("exceptions").get(0).get("stacktrace");
+        assertEquals(100, stacktrace.size());
+        assertEquals("com.example.Foo.method0", stacktrace.get(0).get("method").asText());
+
+        // the payload is still sent once nothing more can be trimmed
+        JsonNode trimming = event.get("metaData").get(Notification.TRIMMING_TAB);
+        assertEquals("[\"threadStacks\",\"metaDataValues\",\"stackframes\"]",
+                trimming.get("trimmed").toString());
+    }
+
+    @Test
+    public void testReportNotModified() throws Throwable {
+        serialize(1000);
+        assertNull(report.getMetaData().get(Notification.TRIMMING_TAB));
+
+        // the report is trimmed afresh when serialized again
+        JsonNode trimming = serialize(size(0) - 1).get("events").get(0)
+                .get("metaData").get(Notification.TRIMMING_TAB);
+        assertEquals("[\"threadStacks\"]", trimming.get("trimmed").toString());
+    }
+
+    @Test
+    public void testNoLimitByDefault() {
+        assertEquals(0, new Configuration("api-key").maxPayloadBytes);
+    }
+
+    private int size(int maxPayloadBytes) throws Throwable {
+        return bytes(maxPayloadBytes).length;
+    }
+
+    private JsonNode serialize(int maxPayloadBytes) throws Throwable {
+        byte[] payload = bytes(maxPayloadBytes);
+        if (maxPayloadBytes > 0 && payload.length > maxPayloadBytes) {
+            // only the smallest limit can't be met
+            assertEquals(1000, maxPayloadBytes);
+        }
+        return mapper.readTree(payload);
+    }
+
+    private byte[] bytes(int maxPayloadBytes) throws Throwable {
+        config.maxPayloadBytes = maxPayloadBytes;
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        serializer.writeToStream(stream, new Notification(config, report));
+        return stream.toByteArray();
+    }
+}
@@ -0,0 +1,91 @@
+package com.bugsnag;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class RateLimiterTest {
+
+    @Test
+    public void testTokenBucket() {
+        RateLimiter.TokenBucket bucket = new RateLimiter.TokenBucket(10);
+        long now = System.nanoTime();
+
+        // A full bucket allows a burst of a second's worth of tokens
+        for (int k = 0; k < 10; k++) {
+            assertTrue(bucket.tryAcquire(now));
+        }
+        assertFalse(bucket.tryAcquire(now));
+
+        // Tokens are refilled at the rate
+        long later = now + TimeUnit.MILLISECONDS.toNanos(100);
+        assertTrue(bucket.tryAcquire(later));
+        assertFalse(bucket.tryAcquire(later));
+
+        // The bucket holds no more than its capacity
+        long muchLater = now + TimeUnit.SECONDS.toNanos(60);
+        for (int k = 0; k < 10; k++) {
+            assertTrue(bucket.tryAcquire(muchLater));
+        }
+        assertFalse(bucket.tryAcquire(muchLater));
+    }
+
+    @Test
+    public void testNoLimits() {
+        RateLimiter limiter = new RateLimiter();
+        for (int k = 0; k < 1000; k++) {
+            assertTrue(limiter.tryAcquire("java.lang.RuntimeException"));
+            assertTrue(limiter.tryAcquireContext("GET /"));
+        }
+        assertEquals(0, limiter.takeSuppressedCount());
+    }
+
+    @Test
+    public void testErrorClassLimit() {
+        RateLimiter limiter = new RateLimiter();
+        limiter.setErrorClassRate(2);
+        assertTrue(limiter.tryAcquire("Foo"));
+        assertTrue(limiter.tryAcquire("Foo"));
+        assertFalse(limiter.tryAcquire("Foo"));
+        assertTrue(limiter.tryAcquire("Bar"));
+        assertEquals(1, limiter.takeSuppressedCount());
+        assertEquals(0, limiter.takeSuppressedCount());
+    }
+
+    @Test
+    public void testGlobalAndContextLimits() {
+        RateLimiter limiter = new RateLimiter();
+        limiter.setGlobalRate(2);
+        limiter.setContextRate(1);
+        assertTrue(limiter.tryAcquire("Foo"));
+        assertTrue(limiter.tryAcquire("Bar"));
+        assertFalse(limiter.tryAcquire("Baz"));
+
+        assertTrue(limiter.tryAcquireContext("GET /"));
+        assertFalse(limiter.tryAcquireContext("GET /"));
+        assertTrue(limiter.tryAcquireContext(null));
+        assertEquals(2, limiter.takeSuppressedCount());
+
+        limiter.setGlobalRate(0);
+        assertTrue(limiter.tryAcquire("Baz"));
+    }
+
+    @Test
+    public void testManyContextsDontResetBusyContext() {
+        RateLimiter limiter = new RateLimiter();
+        limiter.setContextRate(1);
+        assertTrue(limiter.tryAcquireContext("GET /"));
+
+        // the busy context keeps its limit while many other contexts are seen
+        for (int k = 0; k < 5000; k++) {
+            limiter.tryAcquireContext("GET /items/" + k);
+            if (k % 100 == 0) {
+                assertFalse(limiter.tryAcquireContext("GET /"));
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.bugsnag;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class SamplerTest {
+
+    @Test
+    public void testNoRates() {
+        Sampler sampler = new Sampler();
+        assertTrue(Double.isNaN(sampler.getSampleRate("Foo", "com.example", Severity.INFO)));
+        assertTrue(Sampler.isSampled(new RuntimeException(), Double.NaN));
+    }
+
+    @Test
+    public void testMostSpecificRateUsed() {
+        Sampler sampler = new Sampler();
+        sampler.setSeverityRate(Severity.INFO, 0.5);
+        sampler.setLoggerRate("com.example", 0.25);
+        sampler.setErrorClassRate("Foo", 0.1);
+
+        assertEquals(0.1, sampler.getSampleRate("Foo", "com.example", Severity.INFO), 0);
+        assertEquals(0.25, sampler.getSampleRate("Bar", "com.example.Baz", Severity.INFO), 0);
+        assertEquals(0.5, sampler.getSampleRate("Bar", "com.other", Severity.INFO), 0);
+        assertEquals(0.5, sampler.getSampleRate("Bar", "com", Severity.INFO), 0);
+        assertTrue(Double.isNaN(sampler.getSampleRate("Bar", null, Severity.WARNING)));
+        assertTrue(Double.isNaN(sampler.getSampleRate("Bar", null, null)));
+
+        // A rate of 1 still overrides less specific rates
+        sampler.setErrorClassRate("Foo", 1);
+        assertEquals(1, sampler.getSampleRate("Foo", "com.example", Severity.INFO), 0);
+    }
+
+    @Test
+    public void testErrorClassRateOfOneOverridesSeverity() {
+        Sampler sampler = new Sampler();
+        sampler.setSeverityRate(Severity.WARNING, 0);
+        sampler.setErrorClassRate("com.foo.Critical", 1.0);
+
+        double rate = sampler.getSampleRate("com.foo.Critical", null, Severity.WARNING);
+        assertEquals(1, rate, 0);
+        assertTrue(Sampler.isSampled(new RuntimeException(), rate));
+        assertEquals(0, sampler.getSampleRate("com.foo.Other", null, Severity.WARNING), 0);
+    }
+
+    @Test
+    public void testOnlyRatesOfOne() {
+        Sampler sampler = new Sampler();
+        sampler.setErrorClassRate("Foo", 1);
+        assertTrue(Double.isNaN(sampler.getSampleRate("Foo", null, Severity.INFO)));
+
+        sampler.setSeverityRate(Severity.INFO, 0.5);
+        assertEquals(1, sampler.getSampleRate("Foo", null, Severity.INFO), 0);
+    }
+
+    @Test
+    public void testSamplingDeterministic() {
+        int kept = 0;
+        for (int k = 0; k < 10000; k++) {
+            RuntimeException exception = exception("method" + k);
+            boolean sampled = Sampler.isSampled(exception, 0.3);
+            assertEquals(sampled, Sampler.isSampled(exception("method" + k), 0.3));
+            assertEquals(Sampler.hash(exception), Sampler.hash(exception("method" + k)));
+            assertFalse(Sampler.isSampled(exception, 0));
+            assertTrue(Sampler.isSampled(exception, 1));
+            kept += sampled ? 1 : 0;
+        }
+
+        // Roughly the sample rate is kept
+        assertTrue(kept > 2800 && kept < 3200);
+    }
+
+    static RuntimeException exception(String method) {
+        RuntimeException exception = new RuntimeException();
+        exception.setStackTrace(new StackTraceElement[]{
+            new StackTraceElement("com.example.Foo", method, "Foo.java", 1)});
+        return exception;
+    }
+}
@@ -0,0 +1,220 @@
+package com.bugsnag;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import com.bugsnag.serialization.Expose;
+import com.bugsnag.serialization.Serializer;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.IOContext;
+import com.fasterxml.jackson.core.util.JsonGeneratorDelegate;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Checks that notifications written by the {@link Serializer} match the JSON produced by
+ * introspecting their {@link Expose} getters.
+ */
+public class SerializerCompatibilityTest {
+
+    private final Serializer serializer = new Serializer();
+    private final ObjectMapper mapper = new ObjectMapper();
+    private Configuration config;
+
+    /**
+     * Configures the mapper in the same way as the serializer.
+     */
+    @Before
+    @SuppressWarnings("deprecation")
+    public void setUp() {
+        mapper.setSerializationInclusion(JsonInclude.Include.NON_EMPTY)
+                .setVisibilityChecker(
+                        mapper.getVisibilityChecker().with(JsonAutoDetect.Visibility.NONE));
+
+        config = new Configuration("api-key");
+        config.appVersion = "1.2.3";
+        config.releaseStage = "dev";
+        config.projectPackages = new String[]{"com.bugsnag"};
+    }
+
+    @Test
+    public void testHandledReport() throws Throwable {
+        assertCompatible(new Notification(config, new Report(config, new RuntimeException("a"))));
+    }
+
+    @Test
+    public void testFullReport() throws Throwable {
+        Throwable cause = new IllegalStateException();
+        Report report = new Report(config, new RuntimeException("outer", cause),
+                HandledState.newInstance(HandledState.SeverityReasonType.REASON_EXCEPTION_CLASS,
+                        Collections.singletonMap("exceptionClass", "RuntimeException"),
+                        Severity.ERROR, true), Thread.currentThread());
+        report.setSeverity(Severity.INFO)
+                .setApiKey("report-key")
+                .setContext("context")
+                .setGroupingHash("hash")
+                .setUser("id", "email", null)
+                .setDeviceInfo("custom", Arrays.asList(1, 2))
+                .addToTab("tab", "string", "value")
+                .addToTab("tab", "password", "secret")
+                .addToTab("tab", "empty", "")
+                .addToTab("tab", "null", null)
+                .addToTab("tab", "date", new Date(1500000000000L))
+                .addToTab("tab", "bean", new Bean())
+                .addToTab("other", "nested", Collections.singletonMap("password", "secret"));
+        report.setSession(new Session("123", new Date(1500000000000L)));
+        assertCompatible(new Notification(config, report));
+    }
+
+    @Test
+    public void testThreads() throws Throwable {
+        config.sendThreads = true;
+        Report report = new Report(config, new RuntimeException(),
+                HandledState.newInstance(
+                        HandledState.SeverityReasonType.REASON_UNHANDLED_EXCEPTION),
+                Thread.currentThread());
+        assertNotNull(report.getThreads());
+        assertCompatible(new Notification(config, report));
+    }
+
+    @Test
+    public void testEmptyValues() throws Throwable {
+        RuntimeException exception = new RuntimeException("");
+        exception.setStackTrace(new StackTraceElement[]{
+            new StackTraceElement("Foo", "bar", null, -1)});
+        IllegalStateException cause = new IllegalStateException();
+        cause.setStackTrace(new StackTraceElement[0]);
+        exception.initCause(cause);
+
+        Report report = new Report(config, exception);
+        report.setContext("");
+        assertCompatible(new Notification(config, report));
+    }
+
+    @Test
+    public void testFrameNames() throws Throwable {
+        StringBuilder longName = new StringBuilder("com.bugsnag");
+        while (longName.length() < 1000) {
+            longName.append(".package");
+        }
+        RuntimeException exception = new RuntimeException();
+        exception.setStackTrace(new StackTraceElement[]{
+            new StackTraceElement("Foo", "bar", "Foo.java", 1),
+            new StackTraceElement(longName + ".Foo", "bar", "Foo.java", 2),
+            new StackTraceElement("Foo", "lambda$\"quoted\"\t\n", "Foo.java", 3),
+            new StackTraceElement("com.bugsnag.Foo", "bar", "Foo.java", -2)});
+        assertCompatible(new Notification(config, new Report(config, exception)));
+    }
+
+    @Test
+    public void testFilteredMetaData() throws Throwable {
+        config.filters = new String[]{"token", "key"};
+        Map<String, Object> deep = new HashMap<String, Object>();
+        deep.put("api_key", "abc");
+        deep.put("tokens", Arrays.asList("a", "b"));
+        deep.put("empty", new HashMap<String, Object>());
+        deep.put("null", null);
+        Map<String, Object> nested = new HashMap<String, Object>();
+        nested.put("deep", deep);
+        nested.put("value", 1);
+
+        Report report = new Report(config, new RuntimeException())
+                .addToTab("tab", "token", nested)
+                .addToTab("tab", "list", Collections.singletonList(
+                        Collections.singletonMap("token", "in a list")))
+                .addToTab("tab", "password", "not filtered");
+        JsonNode tab = assertCompatible(new Notification(config, report))
+                .get("events").get(0).get("metaData").get("tab");
+        assertEquals("[FILTERED]", tab.get("token").get("deep").get("api_key").asText());
+        assertEquals("not filtered", tab.get("password").asText());
+    }
+
+    @Test
+    public void testBatch() throws Throwable {
+        assertCompatible(new Notification(config, Arrays.asList(
+                new Report(config, new RuntimeException("first")),
+                new Report(config, new IllegalArgumentException("second")))));
+    }
+
+    @Test
+    public void testOtherFormat() throws Throwable {
+        // Generators for other formats can't have raw JSON spliced into them
+        JsonFactory factory = new JsonFactory() {
+            @Override
+            protected JsonGenerator _createUTF8Generator(OutputStream out, IOContext context)
+                    throws IOException {
+                return new JsonGeneratorDelegate(super._createUTF8Generator(out, context)) {
+                    @Override
+                    public void writeRawValue(SerializableString text) {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+        };
+        Serializer serializer = new Serializer(factory, "application/x-test");
+        Notification notification = new Notification(config, new Report(config,
+                new RuntimeException()));
+        JsonNode expected = mapper.readTree(mapper.writeValueAsBytes(notification));
+
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        serializer.writeToStream(stream, notification);
+        assertEquals(expected, mapper.readTree(stream.toByteArray()));
+        assertEquals("application/x-test", serializer.getContentType());
+    }
+
+    @Test
+    public void testReportSubclass() throws Throwable {
+        Report report = new CustomReport(config, new RuntimeException());
+        JsonNode json = assertCompatible(new Notification(config, report));
+        assertEquals("custom", json.get("events").get(0).get("custom").asText());
+    }
+
+    private JsonNode assertCompatible(Notification notification) throws Throwable {
+        JsonNode expected = mapper.readTree(mapper.writeValueAsBytes(notification));
+
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        serializer.writeToStream(stream, notification);
+        JsonNode actual = mapper.readTree(stream.toByteArray());
+        assertEquals(expected, actual);
+        return actual;
+    }
+
+    static class Bean {
+        @Expose
+        public String getName() {
+            return "bean";
+        }
+
+        @Expose
+        public Map<String, Object> getEmpty() {
+            return new HashMap<String, Object>();
+        }
+    }
+
+    static class CustomReport extends Report {
+        CustomReport(Configuration config, Throwable throwable) {
+            super(config, throwable);
+        }
+
+        @Expose
+        public String getCustom() {
+            return "custom";
+        }
+    }
+}
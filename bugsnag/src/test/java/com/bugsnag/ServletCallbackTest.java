@@ -116,6 +116,22 @@ public class ServletCallbackTest {
         assertEquals("Bill", name[0]);
     }
 
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testHeaderFilterPatterns() {
+        bugsnag.setFilters("glob:X-Custom-*", "regex:^Content-L");
+        Report report = generateReport(new java.lang.Exception("Spline reticulation failed"));
+        ServletCallback callback = new ServletCallback();
+        callback.beforeNotify(report);
+
+        Map<String, Object> request = (Map<String, Object>) report.getMetaData().get("request");
+        Map<String, String> headers = (Map<String, String>) request.get("headers");
+        assertEquals("[FILTERED]", headers.get("X-Custom-Header"));
+        assertEquals("[FILTERED]", headers.get("Content-Length"));
+        assertEquals("application/json", headers.get("Content-Type"));
+        assertEquals("Basic ABC123", headers.get("Authorization"));
+    }
+
     @Test
     public void testRequestContextSet() {
         Report report = generateReport(new java.lang.Exception("Spline reticulation failed"));
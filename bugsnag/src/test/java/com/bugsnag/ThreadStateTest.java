@@ -15,6 +15,7 @@ import org.junit.Test;
 import java.io.IOException;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
 
 public class ThreadStateTest {
 
@@ -95,6 +96,116 @@ public class ThreadStateTest {
         assertEquals(1, currentThreadCount);
     }
 
+    /**
+     * Verifies that thread details are captured when the snapshot is taken, rather than when
+     * it is converted for delivery
+     */
+    @Test
+    public void testSnapshotCapturesName() {
+        Thread currentThread = Thread.currentThread();
+        String originalName = currentThread.getName();
+        ThreadSnapshot snapshot =
+                ThreadSnapshot.capture(ThreadCapturePolicy.allThreads(), currentThread, null);
+        try {
+            currentThread.setName("renamed");
+            for (ThreadState threadState : snapshot.toThreadStates(config)) {
+                if (threadState.getId() == currentThread.getId()) {
+                    assertEquals(originalName, threadState.getName());
+                    assertTrue(threadState.isErrorReportingThread());
+                }
+            }
+        } finally {
+            currentThread.setName(originalName);
+        }
+    }
+
+    @Test
+    public void testReportingThreadOnlyPolicy() {
+        RuntimeException exc = new RuntimeException();
+        List<ThreadState> state = ThreadSnapshot.capture(ThreadCapturePolicy.reportingThreadOnly(),
+                Thread.currentThread(), exc).toThreadStates(config);
+        assertEquals(1, state.size());
+        assertEquals(Thread.currentThread().getId(), state.get(0).getId());
+        assertEquals(exc.getStackTrace().length, state.get(0).getStacktrace().size());
+    }
+
+    @Test
+    public void testNameAndStatePolicy() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        Thread waiting = startWaitingThread("policy-waiting", latch);
+        Thread other = startWaitingThread("policy-other", latch);
+        try {
+            ThreadCapturePolicy policy = ThreadCapturePolicy.allThreads()
+                    .withNames("glob:policy-*")
+                    .withStates(Thread.State.WAITING)
+                    .withMaxFrames(2);
+            List<ThreadState> state = ThreadSnapshot.capture(policy, Thread.currentThread(), null)
+                    .toThreadStates(config);
+            assertEquals(3, state.size());
+            for (ThreadState threadState : state) {
+                assertTrue(threadState.getId() == Thread.currentThread().getId()
+                        || threadState.getName().startsWith("policy-"));
+                assertTrue(threadState.getStacktrace().size() <= 2);
+            }
+
+            state = ThreadSnapshot.capture(policy.withNames("waiting").withMaxThreads(1),
+                    Thread.currentThread(), null).toThreadStates(config);
+            assertEquals(1, state.size());
+            assertTrue(state.get(0).isErrorReportingThread());
+
+            state = ThreadSnapshot.capture(policy.withNames("waiting"),
+                    Thread.currentThread(), null).toThreadStates(config);
+            assertEquals(2, state.size());
+            assertTrue(state.get(0).getId() == waiting.getId()
+                    || state.get(1).getId() == waiting.getId());
+        } finally {
+            latch.countDown();
+            waiting.join();
+            other.join();
+        }
+    }
+
+    @Test
+    public void testLimitsWithoutFilters() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        Thread waiting = startWaitingThread("limits-waiting", latch);
+        try {
+            ThreadCapturePolicy policy = ThreadCapturePolicy.allThreads().withMaxFrames(1);
+            List<ThreadState> state = ThreadSnapshot.capture(policy, Thread.currentThread(), null)
+                    .toThreadStates(config);
+            assertTrue(state.size() > 1);
+            for (ThreadState threadState : state) {
+                assertTrue(threadState.getStacktrace().size() <= 1);
+            }
+
+            state = ThreadSnapshot.capture(policy.withMaxThreads(2), Thread.currentThread(), null)
+                    .toThreadStates(config);
+            assertEquals(2, state.size());
+        } finally {
+            latch.countDown();
+            waiting.join();
+        }
+    }
+
+    private Thread startWaitingThread(String name, final CountDownLatch latch)
+            throws InterruptedException {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    latch.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, name);
+        thread.start();
+        while (thread.getState() != Thread.State.WAITING) {
+            Thread.sleep(1);
+        }
+        return thread;
+    }
+
     /**
      * Verifies that a thread different from the current thread is serialised as an object,
      * and that only this value contains the errorReportingThread boolean flag
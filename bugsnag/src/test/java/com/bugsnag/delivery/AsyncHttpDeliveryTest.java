@@ -0,0 +1,201 @@
+package com.bugsnag.delivery;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.bugsnag.serialization.Serializer;
+import com.bugsnag.util.VirtualThreads;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+public class AsyncHttpDeliveryTest {
+
+    private static final Map<String, String> HEADERS = Collections.emptyMap();
+
+    private AsyncHttpDelivery delivery;
+    private BlockingDelivery baseDelivery;
+
+    /**
+     * Creates an async delivery with a queue of two reports, whose worker is blocked
+     * delivering the first report.
+     *
+     * @throws InterruptedException if the worker did not start
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        baseDelivery = new BlockingDelivery();
+        delivery = new AsyncHttpDelivery();
+        delivery.setBaseDelivery(baseDelivery);
+        delivery.setQueueCapacity(2);
+
+        delivery.deliver(null, "first", HEADERS);
+        assertTrue(baseDelivery.started.await(1, TimeUnit.SECONDS));
+        delivery.deliver(null, "a", HEADERS);
+        delivery.deliver(null, "b", HEADERS);
+    }
+
+    @After
+    public void tearDown() {
+        baseDelivery.release.countDown();
+        delivery.close();
+    }
+
+    @Test
+    public void testDropNewest() {
+        delivery.deliver(null, "c", HEADERS);
+        assertDelivered("first", "a", "b");
+        assertEquals(1, delivery.getDroppedReportCount(OverflowPolicy.DROP_NEWEST));
+    }
+
+    @Test
+    public void testDropOldest() {
+        delivery.setOverflowPolicy(OverflowPolicy.DROP_OLDEST);
+        delivery.deliver(null, "c", HEADERS);
+        assertDelivered("first", "b", "c");
+        assertEquals(1, delivery.getDroppedReportCount(OverflowPolicy.DROP_OLDEST));
+        assertEquals(0, delivery.getDroppedReportCount(OverflowPolicy.DROP_NEWEST));
+    }
+
+    @Test
+    public void testSample() {
+        delivery.setOverflowPolicy(OverflowPolicy.SAMPLE);
+        delivery.setOverflowSampleRate(2);
+        delivery.deliver(null, "c", HEADERS);
+        delivery.deliver(null, "d", HEADERS);
+        assertDelivered("first", "b", "d");
+        assertEquals(2, delivery.getDroppedReportCount(OverflowPolicy.SAMPLE));
+    }
+
+    @Test
+    public void testBlockWithTimeoutExpires() {
+        delivery.setOverflowPolicy(OverflowPolicy.BLOCK_WITH_TIMEOUT);
+        delivery.setOverflowTimeout(10);
+        delivery.deliver(null, "c", HEADERS);
+        assertDelivered("first", "a", "b");
+        assertEquals(1, delivery.getDroppedReportCount(OverflowPolicy.BLOCK_WITH_TIMEOUT));
+    }
+
+    @Test
+    public void testBlockWithTimeoutQueues() {
+        delivery.setOverflowPolicy(OverflowPolicy.BLOCK_WITH_TIMEOUT);
+        delivery.setOverflowTimeout(5000);
+        new Thread() {
+            @Override
+            public void run() {
+                baseDelivery.release.countDown();
+            }
+        }.start();
+        delivery.deliver(null, "c", HEADERS);
+        assertDelivered("first", "a", "b", "c");
+        assertEquals(0, delivery.getDroppedReportCount(OverflowPolicy.BLOCK_WITH_TIMEOUT));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeOverflowTimeout() {
+        delivery.setOverflowTimeout(-1);
+    }
+
+    @Test
+    public void testQueueCapacityMovesQueuedReports() throws InterruptedException {
+        delivery.setQueueCapacity(1);
+
+        // a new worker picks up the first queued report, and the other fills the new queue
+        assertTrue(baseDelivery.entered.tryAcquire(2, 1, TimeUnit.SECONDS));
+        delivery.deliver(null, "c", HEADERS);
+        assertDelivered("first", "a", "b");
+        assertEquals(1, delivery.getDroppedReportCount(OverflowPolicy.DROP_NEWEST));
+    }
+
+    @Test
+    public void testWorkerCount() throws InterruptedException {
+        delivery.setWorkerCount(3);
+
+        // the queued reports are picked up by new workers while the first is still blocked
+        assertTrue(baseDelivery.entered.tryAcquire(3, 1, TimeUnit.SECONDS));
+        assertDelivered("first", "a", "b");
+    }
+
+    @Test
+    public void testVirtualThreads() throws InterruptedException {
+        delivery.setUseVirtualThreads(true);
+        delivery.setWorkerCount(3);
+        assertTrue(baseDelivery.entered.tryAcquire(3, 1, TimeUnit.SECONDS));
+
+        // virtual threads are always daemon threads, unlike the default worker threads
+        boolean virtual = VirtualThreads.isSupported();
+        List<Thread> workers = baseDelivery.threads;
+        assertFalse(workers.get(0).isDaemon());
+        assertEquals(virtual, workers.get(1).isDaemon());
+        assertEquals(virtual, workers.get(2).isDaemon());
+        assertTrue(workers.get(2).getName().startsWith("bugsnag-async-delivery-"));
+        assertDelivered("first", "a", "b");
+    }
+
+    private void assertDelivered(String... expected) {
+        baseDelivery.release.countDown();
+        delivery.close();
+
+        // concurrent workers can complete in any order
+        List<Object> delivered = new ArrayList<Object>(baseDelivery.delivered);
+        Collections.sort(delivered, new Comparator<Object>() {
+            @Override
+            public int compare(Object first, Object second) {
+                return first.toString().compareTo(second.toString());
+            }
+        });
+        List<String> sorted = new ArrayList<String>(Arrays.asList(expected));
+        Collections.sort(sorted);
+        assertEquals(sorted, delivered);
+    }
+
+    private static class BlockingDelivery implements HttpDelivery {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Semaphore entered = new Semaphore(0);
+        final List<Object> delivered = Collections.synchronizedList(new ArrayList<Object>());
+        final List<Thread> threads = Collections.synchronizedList(new ArrayList<Thread>());
+
+        @Override
+        public void deliver(Serializer serializer, Object object, Map<String, String> headers) {
+            threads.add(Thread.currentThread());
+            started.countDown();
+            entered.release();
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            delivered.add(object);
+        }
+
+        @Override
+        public void setEndpoint(String endpoint) {
+        }
+
+        @Override
+        public void setTimeout(int timeout) {
+        }
+
+        @Override
+        public void setProxy(Proxy proxy) {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.bugsnag.delivery;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import com.bugsnag.serialization.Serializer;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+public class CircuitBreakerDeliveryTest {
+
+    private static final Map<String, String> HEADERS = Collections.emptyMap();
+
+    @Test
+    public void testOpensAfterConsecutiveFailures() throws InterruptedException {
+        ScriptedDelivery baseDelivery = new ScriptedDelivery(DeliveryResult.Status.UNDELIVERED);
+        CircuitBreakerDelivery delivery = new CircuitBreakerDelivery(baseDelivery);
+        delivery.setFailureThreshold(2);
+
+        delivery.deliver(new Serializer(), "first", HEADERS);
+        assertEquals(CircuitBreakerDelivery.State.CLOSED, delivery.getState());
+        delivery.deliver(new Serializer(), "second", HEADERS);
+        assertEquals(CircuitBreakerDelivery.State.OPEN, delivery.getState());
+
+        DeliveryResult result = delivery.deliverWithResult(new Serializer(), "third", HEADERS);
+        assertEquals(DeliveryResult.Status.UNDELIVERED, result.getStatus());
+        assertEquals(Arrays.asList("\"first\"", "\"second\""), baseDelivery.awaitPayloads(2));
+        assertEquals(2, baseDelivery.payloads.size());
+        assertEquals(1, delivery.getDroppedReportCount());
+    }
+
+    @Test
+    public void testFailedReportDoesNotOpen() {
+        ScriptedDelivery baseDelivery = new ScriptedDelivery(DeliveryResult.Status.FAILURE);
+        CircuitBreakerDelivery delivery = new CircuitBreakerDelivery(baseDelivery);
+        delivery.setFailureThreshold(1);
+        delivery.deliver(new Serializer(), "report", HEADERS);
+        assertEquals(CircuitBreakerDelivery.State.CLOSED, delivery.getState());
+    }
+
+    @Test
+    public void testDivertsToFallbackWhenOpen() throws InterruptedException {
+        ScriptedDelivery baseDelivery = new ScriptedDelivery(DeliveryResult.Status.UNDELIVERED);
+        ScriptedDelivery fallback = new ScriptedDelivery(DeliveryResult.Status.DELIVERED);
+        CircuitBreakerDelivery delivery = new CircuitBreakerDelivery(baseDelivery, fallback);
+        delivery.setFailureThreshold(1);
+
+        delivery.deliver(new Serializer(), "first", HEADERS);
+        delivery.deliver(new Serializer(), "second", HEADERS);
+        assertEquals(Arrays.asList("\"second\""), fallback.awaitPayloads(1));
+        assertEquals(1, delivery.getDivertedReportCount());
+        assertEquals(0, delivery.getDroppedReportCount());
+    }
+
+    @Test
+    public void testHalfOpenTrial() throws InterruptedException {
+        ScriptedDelivery baseDelivery = new ScriptedDelivery(DeliveryResult.Status.DELIVERED,
+                DeliveryResult.Status.UNDELIVERED, DeliveryResult.Status.UNDELIVERED);
+        CircuitBreakerDelivery delivery = new CircuitBreakerDelivery(baseDelivery);
+        delivery.setFailureThreshold(1);
+        delivery.setOpenMs(20);
+
+        delivery.deliver(new Serializer(), "first", HEADERS);
+        assertEquals(CircuitBreakerDelivery.State.OPEN, delivery.getState());
+
+        // a failed trial re-opens the circuit
+        Thread.sleep(30);
+        delivery.deliver(new Serializer(), "second", HEADERS);
+        assertEquals(CircuitBreakerDelivery.State.OPEN, delivery.getState());
+        delivery.deliver(new Serializer(), "dropped", HEADERS);
+
+        // a successful trial closes it
+        Thread.sleep(30);
+        delivery.deliver(new Serializer(), "third", HEADERS);
+        assertEquals(CircuitBreakerDelivery.State.CLOSED, delivery.getState());
+        assertEquals(Arrays.asList("\"first\"", "\"second\"", "\"third\""),
+                baseDelivery.awaitPayloads(3));
+        assertEquals(1, delivery.getDroppedReportCount());
+    }
+
+    @Test
+    public void testThrowingTrialReopens() throws InterruptedException {
+        final ScriptedDelivery scripted = new ScriptedDelivery(DeliveryResult.Status.UNDELIVERED);
+        final boolean[] throwing = {false};
+        ResultDelivery baseDelivery = new ResultDelivery() {
+            @Override
+            public DeliveryResult deliverWithResult(Serializer serializer,
+                                                    Object object,
+                                                    Map<String, String> headers) {
+                if (throwing[0]) {
+                    throw new IllegalStateException("failed");
+                }
+                return scripted.deliverWithResult(serializer, object, headers);
+            }
+
+            @Override
+            public void deliver(Serializer serializer, Object object,
+                                Map<String, String> headers) {
+                deliverWithResult(serializer, object, headers);
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        CircuitBreakerDelivery delivery = new CircuitBreakerDelivery(baseDelivery);
+        delivery.setFailureThreshold(1);
+        delivery.setOpenMs(20);
+
+        delivery.deliver(new Serializer(), "first", HEADERS);
+        assertEquals(CircuitBreakerDelivery.State.OPEN, delivery.getState());
+
+        Thread.sleep(30);
+        throwing[0] = true;
+        try {
+            delivery.deliver(new Serializer(), "second", HEADERS);
+            fail();
+        } catch (IllegalStateException ex) {
+            assertEquals(CircuitBreakerDelivery.State.OPEN, delivery.getState());
+        }
+
+        // the trial ended, so another is sent once the circuit has been open for a while
+        Thread.sleep(30);
+        throwing[0] = false;
+        delivery.deliver(new Serializer(), "third", HEADERS);
+        assertEquals(Arrays.asList("\"first\"", "\"third\""), scripted.awaitPayloads(2));
+    }
+
+    @Test
+    public void testCircuitPerEndpoint() {
+        ScriptedDelivery baseDelivery = new ScriptedDelivery(DeliveryResult.Status.UNDELIVERED);
+        CircuitBreakerDelivery delivery = new CircuitBreakerDelivery(baseDelivery);
+        delivery.setFailureThreshold(1);
+        delivery.setEndpoint("https://notify.example.com");
+        delivery.deliver(new Serializer(), "report", HEADERS);
+        assertEquals(CircuitBreakerDelivery.State.OPEN, delivery.getState());
+
+        delivery.setEndpoint("https://other.example.com");
+        assertEquals(CircuitBreakerDelivery.State.CLOSED, delivery.getState());
+    }
+}
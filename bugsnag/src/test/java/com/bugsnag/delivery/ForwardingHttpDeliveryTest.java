@@ -0,0 +1,104 @@
+package com.bugsnag.delivery;
+
+import static org.junit.Assert.assertEquals;
+
+import com.bugsnag.serialization.Serializer;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.net.Proxy;
+import java.util.Map;
+
+public class ForwardingHttpDeliveryTest {
+
+    @Test
+    public void testForwardsSettings() {
+        RecordingDelivery baseDelivery = new RecordingDelivery();
+        ForwardingHttpDelivery delivery = new PassThroughDelivery(baseDelivery);
+        delivery.setEndpoint("https://example.com");
+        delivery.setTimeout(100);
+        delivery.setReadTimeout(200);
+        delivery.setDeadline(300);
+        delivery.setCompression(Compression.GZIP);
+
+        assertEquals("https://example.com", baseDelivery.endpoint);
+        assertEquals(100, baseDelivery.timeout);
+        assertEquals(200, baseDelivery.readTimeout);
+        assertEquals(300, baseDelivery.deadline);
+        assertEquals(Compression.GZIP, baseDelivery.compression);
+    }
+
+    @Test
+    public void testIgnoresSettingsForOtherDeliveries() {
+        ForwardingHttpDelivery delivery =
+                new PassThroughDelivery(new OutputStreamDelivery(new ByteArrayOutputStream()));
+        delivery.setEndpoint("https://example.com");
+        delivery.setTimeout(100);
+        delivery.setReadTimeout(200);
+        delivery.setDeadline(300);
+        delivery.setProxy(Proxy.NO_PROXY);
+        delivery.setCompression(Compression.GZIP);
+    }
+
+    private static class PassThroughDelivery extends ForwardingHttpDelivery {
+        PassThroughDelivery(Delivery baseDelivery) {
+            super(baseDelivery);
+        }
+
+        @Override
+        public void deliver(Serializer serializer, Object object, Map<String, String> headers) {
+            baseDelivery.deliver(serializer, object, headers);
+        }
+
+        @Override
+        public void close() {
+            baseDelivery.close();
+        }
+    }
+
+    private static class RecordingDelivery implements ConfigurableHttpDelivery {
+        private String endpoint;
+        private int timeout;
+        private int readTimeout;
+        private int deadline;
+        private Compression compression;
+
+        @Override
+        public void setEndpoint(String endpoint) {
+            this.endpoint = endpoint;
+        }
+
+        @Override
+        public void setTimeout(int timeout) {
+            this.timeout = timeout;
+        }
+
+        @Override
+        public void setReadTimeout(int readTimeout) {
+            this.readTimeout = readTimeout;
+        }
+
+        @Override
+        public void setDeadline(int deadline) {
+            this.deadline = deadline;
+        }
+
+        @Override
+        public void setProxy(Proxy proxy) {
+        }
+
+        @Override
+        public void setCompression(Compression compression) {
+            this.compression = compression;
+        }
+
+        @Override
+        public void deliver(Serializer serializer, Object object, Map<String, String> headers) {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.bugsnag.delivery;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+import com.bugsnag.serialization.Serializer;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class HttpClientDeliveryTest {
+
+    private static final Map<String, String> HEADERS =
+            Collections.singletonMap("Bugsnag-Api-Key", "api-key");
+    private static final Map<String, String> PAYLOAD = Collections.singletonMap("foo", "bar");
+
+    private HttpServer server;
+    private HttpClientDelivery delivery;
+    private final List<String> apiKeys = Collections.synchronizedList(new ArrayList<String>());
+    private volatile int responseCode = 200;
+    private volatile CountDownLatch release = new CountDownLatch(0);
+
+    /**
+     * Starts a local server which records the API key of each request, if the HTTP client is
+     * available in this version of Java
+     *
+     * @throws IOException if the server could not be started
+     */
+    @Before
+    public void setUp() throws IOException {
+        assumeTrue(HttpClientDelivery.isSupported());
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                InputStream body = exchange.getRequestBody();
+                while (body.read() != -1) {
+                    // Discard the request body
+                }
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                apiKeys.add(exchange.getRequestHeaders().getFirst("Bugsnag-Api-Key"));
+                exchange.getResponseHeaders().add("Retry-After", "3");
+                exchange.sendResponseHeaders(responseCode, -1);
+                exchange.close();
+            }
+        });
+        server.start();
+        delivery = new HttpClientDelivery("http://127.0.0.1:" + server.getAddress().getPort());
+    }
+
+    /**
+     * Stops the server
+     */
+    @After
+    public void tearDown() {
+        if (server != null) {
+            release.countDown();
+            delivery.close();
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testDeliverAsync() throws Exception {
+        Future<DeliveryResult> future = delivery.deliverAsync(new Serializer(), PAYLOAD, HEADERS);
+        DeliveryResult result = future.get(5, TimeUnit.SECONDS);
+        assertEquals(DeliveryResult.Status.DELIVERED, result.getStatus());
+        assertEquals(200, result.getResponseCode());
+        assertEquals(Collections.singletonList("api-key"), apiKeys);
+    }
+
+    @Test
+    public void testRetryAfter() {
+        responseCode = 503;
+        DeliveryResult result = delivery.deliverWithResult(new Serializer(), PAYLOAD, HEADERS);
+        assertEquals(DeliveryResult.Status.UNDELIVERED, result.getStatus());
+        assertEquals(3000, result.getRetryAfterMs());
+    }
+
+    @Test
+    public void testManyRequestsInFlight() throws Exception {
+        release = new CountDownLatch(1);
+        List<Future<DeliveryResult>> futures = new ArrayList<Future<DeliveryResult>>();
+        for (int k = 0; k < 10; k++) {
+            futures.add(delivery.deliverAsync(new Serializer(), PAYLOAD, HEADERS));
+        }
+        release.countDown();
+        for (Future<DeliveryResult> future : futures) {
+            assertEquals(DeliveryResult.Status.DELIVERED,
+                    future.get(5, TimeUnit.SECONDS).getStatus());
+        }
+        assertEquals(10, apiKeys.size());
+    }
+
+    @Test
+    public void testMaxInFlight() throws Exception {
+        release = new CountDownLatch(1);
+        delivery.setMaxInFlight(1);
+        final Future<DeliveryResult> first = delivery.deliverAsync(new Serializer(), PAYLOAD, HEADERS);
+        Future<DeliveryResult> second = delivery.deliverAsync(new Serializer(), PAYLOAD, HEADERS);
+        assertEquals(DeliveryResult.Status.UNDELIVERED, second.get().getStatus());
+        assertEquals(1, delivery.getDroppedReportCount());
+
+        release.countDown();
+        assertEquals(DeliveryResult.Status.DELIVERED, first.get(5, TimeUnit.SECONDS).getStatus());
+    }
+
+    @Test
+    public void testSocksProxyIsNotBypassed() throws Exception {
+        // Nothing listens on the proxy port, so the payload can't be delivered through it
+        ServerSocket socket = new ServerSocket(0, 1, InetAddress.getByName("127.0.0.1"));
+        int port = socket.getLocalPort();
+        socket.close();
+        delivery.setProxy(new Proxy(Proxy.Type.SOCKS, new InetSocketAddress("127.0.0.1", port)));
+
+        Future<DeliveryResult> future = delivery.deliverAsync(new Serializer(), PAYLOAD, HEADERS);
+        DeliveryResult result = future.get(5, TimeUnit.SECONDS);
+        assertEquals(DeliveryResult.Status.UNDELIVERED, result.getStatus());
+        assertEquals(Collections.emptyList(), apiKeys);
+    }
+}
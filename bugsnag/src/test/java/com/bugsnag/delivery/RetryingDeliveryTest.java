@@ -0,0 +1,234 @@
+package com.bugsnag.delivery;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.bugsnag.serialization.Serializer;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class RetryingDeliveryTest {
+
+    private static final Map<String, String> HEADERS = Collections.emptyMap();
+
+    @Test
+    public void testDeliveredReportNotRetried() throws InterruptedException {
+        ScriptedDelivery baseDelivery = new ScriptedDelivery(DeliveryResult.Status.DELIVERED);
+        RetryingDelivery delivery = new RetryingDelivery(baseDelivery);
+        delivery.deliver(new Serializer(), "report", HEADERS);
+        delivery.close();
+
+        assertEquals(Arrays.asList("\"report\""), baseDelivery.awaitPayloads(1));
+        assertEquals(0, delivery.getDroppedReportCount());
+    }
+
+    @Test
+    public void testUndeliveredReportRetried() throws InterruptedException {
+        ScriptedDelivery baseDelivery = new ScriptedDelivery(DeliveryResult.Status.DELIVERED,
+                DeliveryResult.Status.UNDELIVERED, DeliveryResult.Status.UNDELIVERED);
+        RetryingDelivery delivery = new RetryingDelivery(baseDelivery);
+        delivery.setInitialBackoffMs(10);
+        delivery.deliver(new Serializer(), "report", HEADERS);
+
+        assertEquals(3, baseDelivery.awaitPayloads(3).size());
+        awaitSettled(delivery, 0);
+        delivery.close();
+        assertEquals(0, delivery.getDroppedReportCount());
+        assertEquals(0, delivery.getPendingRetryCount());
+    }
+
+    @Test
+    public void testFailedReportNotRetried() throws InterruptedException {
+        ScriptedDelivery baseDelivery = new ScriptedDelivery(DeliveryResult.Status.FAILURE);
+        RetryingDelivery delivery = new RetryingDelivery(baseDelivery);
+        delivery.setInitialBackoffMs(10);
+        delivery.deliver(new Serializer(), "report", HEADERS);
+        Thread.sleep(50);
+        delivery.close();
+
+        assertEquals(1, baseDelivery.awaitPayloads(1).size());
+        assertEquals(1, baseDelivery.payloads.size());
+    }
+
+    @Test
+    public void testGivesUpAfterMaxRetries() throws InterruptedException {
+        ScriptedDelivery baseDelivery = new ScriptedDelivery(DeliveryResult.Status.UNDELIVERED);
+        RetryingDelivery delivery = new RetryingDelivery(baseDelivery);
+        delivery.setInitialBackoffMs(1);
+        delivery.setMaxRetries(2);
+        delivery.deliver(new Serializer(), "report", HEADERS);
+        baseDelivery.awaitPayloads(3);
+        awaitSettled(delivery, 1);
+        delivery.close();
+
+        assertEquals(3, baseDelivery.payloads.size());
+        assertEquals(1, delivery.getDroppedReportCount());
+        assertEquals(0, delivery.getPendingRetryCount());
+    }
+
+    @Test
+    public void testPendingRetriesCapped() throws InterruptedException {
+        ScriptedDelivery baseDelivery = new ScriptedDelivery(DeliveryResult.Status.UNDELIVERED);
+        RetryingDelivery delivery = new RetryingDelivery(baseDelivery);
+        delivery.setInitialBackoffMs(60000);
+        delivery.setMaxPendingRetries(1);
+        delivery.deliver(new Serializer(), "first", HEADERS);
+        delivery.deliver(new Serializer(), "second", HEADERS);
+
+        assertEquals(1, delivery.getPendingRetryCount());
+        assertEquals(1, delivery.getDroppedReportCount());
+
+        // wait for the first attempt to fail and its retry to be scheduled
+        assertEquals(Arrays.asList("\"first\""), baseDelivery.awaitPayloads(1));
+        Thread.sleep(50);
+
+        // the pending retry is attempted once more on close
+        delivery.close();
+        assertEquals(Arrays.asList("\"first\"", "\"first\""), baseDelivery.awaitPayloads(2));
+        assertEquals(2, delivery.getDroppedReportCount());
+    }
+
+    @Test
+    public void testRetryAfterLongerThanMaxBackoff() throws InterruptedException {
+        ResultDelivery baseDelivery = new ResultDelivery() {
+            @Override
+            public DeliveryResult deliverWithResult(Serializer serializer,
+                                                    Object object,
+                                                    Map<String, String> headers) {
+                return DeliveryResult.fromResponseCode(429, 3600000);
+            }
+
+            @Override
+            public void deliver(Serializer serializer, Object object,
+                                Map<String, String> headers) {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        RetryingDelivery delivery = new RetryingDelivery(baseDelivery);
+        delivery.deliver(new Serializer(), "report", HEADERS);
+        awaitSettled(delivery, 1);
+
+        assertEquals(1, delivery.getDroppedReportCount());
+        assertEquals(0, delivery.getPendingRetryCount());
+        delivery.close();
+    }
+
+    @Test
+    public void testFirstAttemptInBackground() throws InterruptedException {
+        final CountDownLatch release = new CountDownLatch(1);
+        ScriptedDelivery baseDelivery = new ScriptedDelivery(DeliveryResult.Status.DELIVERED) {
+            @Override
+            public DeliveryResult deliverWithResult(Serializer serializer,
+                                                    Object object,
+                                                    Map<String, String> headers) {
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.deliverWithResult(serializer, object, headers);
+            }
+        };
+        RetryingDelivery delivery = new RetryingDelivery(baseDelivery);
+
+        // the caller returns while the base delivery is still blocked
+        delivery.deliver(new Serializer(), "report", HEADERS);
+        assertEquals(1, delivery.getPendingRetryCount());
+
+        release.countDown();
+        assertEquals(Arrays.asList("\"report\""), baseDelivery.awaitPayloads(1));
+        awaitSettled(delivery, 0);
+        delivery.close();
+    }
+
+    @Test
+    public void testCloseWaitsForRunningAttempt() throws InterruptedException {
+        final CountDownLatch started = new CountDownLatch(1);
+        final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+        ScriptedDelivery baseDelivery = new ScriptedDelivery(DeliveryResult.Status.DELIVERED) {
+            @Override
+            public DeliveryResult deliverWithResult(Serializer serializer,
+                                                    Object object,
+                                                    Map<String, String> headers) {
+                started.countDown();
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                events.add("delivered");
+                return super.deliverWithResult(serializer, object, headers);
+            }
+
+            @Override
+            public void close() {
+                events.add("closed");
+            }
+        };
+        RetryingDelivery delivery = new RetryingDelivery(baseDelivery);
+        delivery.deliver(new Serializer(), "report", HEADERS);
+        started.await();
+        delivery.close();
+        assertEquals(Arrays.asList("delivered", "closed"), events);
+    }
+
+    @Test
+    public void testCloseTimeLimited() throws InterruptedException {
+        final AtomicBoolean slow = new AtomicBoolean();
+        ScriptedDelivery baseDelivery = new ScriptedDelivery(DeliveryResult.Status.UNDELIVERED) {
+            @Override
+            public DeliveryResult deliverWithResult(Serializer serializer,
+                                                    Object object,
+                                                    Map<String, String> headers) {
+                if (slow.get()) {
+                    try {
+                        Thread.sleep(2500);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return super.deliverWithResult(serializer, object, headers);
+            }
+        };
+        RetryingDelivery delivery = new RetryingDelivery(baseDelivery);
+        delivery.setInitialBackoffMs(60000);
+        for (int k = 0; k < 5; k++) {
+            delivery.deliver(new Serializer(), "report", HEADERS);
+        }
+        baseDelivery.awaitPayloads(5);
+        Thread.sleep(50);
+
+        // two final attempts fit in the shutdown timeout, and the rest are dropped
+        slow.set(true);
+        long start = System.currentTimeMillis();
+        delivery.close();
+        assertTrue(System.currentTimeMillis() - start < 8000);
+        assertEquals(7, baseDelivery.payloads.size());
+        assertEquals(5, delivery.getDroppedReportCount());
+        assertEquals(0, delivery.getPendingRetryCount());
+    }
+
+    /**
+     * Waits for the last attempt to finish, as a result is recorded just after the base
+     * delivery returns
+     */
+    private static void awaitSettled(RetryingDelivery delivery,
+                                     long dropped) throws InterruptedException {
+        long end = System.currentTimeMillis() + 5000;
+        while ((delivery.getPendingRetryCount() != 0 || delivery.getDroppedReportCount() != dropped)
+                && System.currentTimeMillis() < end) {
+            Thread.sleep(10);
+        }
+    }
+}
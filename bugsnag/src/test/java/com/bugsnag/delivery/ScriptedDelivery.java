@@ -0,0 +1,75 @@
+package com.bugsnag.delivery;
+
+import com.bugsnag.serialization.SerializationException;
+import com.bugsnag.serialization.Serializer;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records the payloads it is given and returns a scripted result for each
+ */
+class ScriptedDelivery implements ResultDelivery {
+    private final DeliveryResult.Status fallback;
+    private final List<DeliveryResult.Status> script;
+    final List<String> payloads = new ArrayList<String>();
+    final List<Map<String, String>> headers = new ArrayList<Map<String, String>>();
+    final List<String> contentTypes = new ArrayList<String>();
+
+    /**
+     * Returns each status in the script in turn, then the fallback status
+     */
+    ScriptedDelivery(DeliveryResult.Status fallback, DeliveryResult.Status... script) {
+        this.fallback = fallback;
+        this.script = new ArrayList<DeliveryResult.Status>(Arrays.asList(script));
+    }
+
+    @Override
+    public DeliveryResult deliverWithResult(Serializer serializer,
+                                            Object object,
+                                            Map<String, String> headers) {
+        synchronized (payloads) {
+            payloads.add(serialize(serializer, object));
+            this.headers.add(headers);
+            contentTypes.add(serializer.getContentType());
+            payloads.notifyAll();
+            DeliveryResult.Status status = script.isEmpty() ? fallback : script.remove(0);
+            if (status == DeliveryResult.Status.DELIVERED) {
+                return DeliveryResult.delivered();
+            }
+            return DeliveryResult.fromError(status, null);
+        }
+    }
+
+    @Override
+    public void deliver(Serializer serializer, Object object, Map<String, String> headers) {
+        deliverWithResult(serializer, object, headers);
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private static String serialize(Serializer serializer, Object object) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try {
+            serializer.writeToStream(outputStream, object);
+        } catch (SerializationException ex) {
+            throw new IllegalStateException(ex);
+        }
+        return new String(outputStream.toByteArray());
+    }
+
+    List<String> awaitPayloads(int count) throws InterruptedException {
+        synchronized (payloads) {
+            long end = System.currentTimeMillis() + 5000;
+            while (payloads.size() < count && System.currentTimeMillis() < end) {
+                payloads.wait(100);
+            }
+            return new ArrayList<String>(payloads.subList(0, Math.min(count, payloads.size())));
+        }
+    }
+}
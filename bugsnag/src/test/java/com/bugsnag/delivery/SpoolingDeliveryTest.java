@@ -0,0 +1,152 @@
+package com.bugsnag.delivery;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.bugsnag.serialization.Serializer;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+public class SpoolingDeliveryTest {
+
+    private static final Map<String, String> HEADERS =
+            Collections.singletonMap("Bugsnag-Api-Key", "api-key");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File directory;
+
+    @Before
+    public void setUp() {
+        directory = new File(folder.getRoot(), "spool");
+    }
+
+    @Test
+    public void testDeliveredReportsRemoved() throws InterruptedException {
+        ScriptedDelivery baseDelivery = new ScriptedDelivery(DeliveryResult.Status.DELIVERED);
+        SpoolingDelivery delivery = new SpoolingDelivery(baseDelivery, directory);
+        delivery.deliver(new Serializer(), "first", HEADERS);
+        delivery.deliver(new Serializer(), "second", HEADERS);
+
+        assertEquals(Arrays.asList("\"first\"", "\"second\""), baseDelivery.awaitPayloads(2));
+        assertEquals("api-key", baseDelivery.headers.get(0).get("Bugsnag-Api-Key"));
+        delivery.close();
+
+        assertEquals(0, delivery.getPendingReportCount());
+        assertEquals(0, directory.list().length);
+    }
+
+    @Test
+    public void testContentTypeSpooled() throws InterruptedException {
+        ScriptedDelivery baseDelivery = new ScriptedDelivery(DeliveryResult.Status.DELIVERED);
+        SpoolingDelivery delivery = new SpoolingDelivery(baseDelivery, directory);
+        delivery.deliver(new Serializer(new JsonFactory(), "application/x-test"), "first",
+                HEADERS);
+        delivery.deliver(new Serializer(), "second", HEADERS);
+        baseDelivery.awaitPayloads(2);
+        delivery.close();
+
+        assertEquals(Arrays.asList("application/x-test", "application/json"),
+                baseDelivery.contentTypes);
+        assertEquals(HEADERS, baseDelivery.headers.get(0));
+    }
+
+    @Test
+    public void testSentAtSetWhenReplayed() throws InterruptedException {
+        ScriptedDelivery baseDelivery = new ScriptedDelivery(DeliveryResult.Status.DELIVERED);
+        SpoolingDelivery delivery = new SpoolingDelivery(baseDelivery, directory);
+        delivery.deliver(new Serializer(), "report",
+                Collections.singletonMap("Bugsnag-Sent-At", "2000-01-01T00:00:00Z"));
+        baseDelivery.awaitPayloads(1);
+        delivery.close();
+
+        String sentAt = baseDelivery.headers.get(0).get("Bugsnag-Sent-At");
+        assertTrue(sentAt.matches("\\d{4}-\\d{2}-\\d{2}T\\d{2}:\\d{2}:\\d{2}Z"));
+        assertFalse(sentAt.startsWith("2000"));
+    }
+
+    @Test
+    public void testUndeliveredReportRetried() throws InterruptedException {
+        ScriptedDelivery baseDelivery = new ScriptedDelivery(DeliveryResult.Status.DELIVERED,
+                DeliveryResult.Status.UNDELIVERED, DeliveryResult.Status.UNDELIVERED);
+        SpoolingDelivery delivery = new SpoolingDelivery(baseDelivery, directory);
+        delivery.setInitialBackoffMs(10);
+        delivery.deliver(new Serializer(), "report", HEADERS);
+
+        assertEquals(Arrays.asList("\"report\"", "\"report\"", "\"report\""),
+                baseDelivery.awaitPayloads(3));
+        delivery.close();
+        assertEquals(0, delivery.getPendingReportCount());
+    }
+
+    @Test
+    public void testInitialBackoffSetAfterConstruction() throws InterruptedException {
+        ScriptedDelivery baseDelivery = new ScriptedDelivery(DeliveryResult.Status.DELIVERED,
+                DeliveryResult.Status.UNDELIVERED, DeliveryResult.Status.UNDELIVERED);
+        SpoolingDelivery delivery = new SpoolingDelivery(baseDelivery, directory);
+        delivery.setInitialBackoffMs(10);
+        long start = System.currentTimeMillis();
+        delivery.deliver(new Serializer(), "report", HEADERS);
+
+        assertEquals(3, baseDelivery.awaitPayloads(3).size());
+        assertTrue(System.currentTimeMillis() - start < 1000);
+        delivery.close();
+    }
+
+    @Test
+    public void testSpoolSurvivesRestart() throws InterruptedException {
+        ScriptedDelivery offline = new ScriptedDelivery(DeliveryResult.Status.UNDELIVERED);
+        SpoolingDelivery delivery = new SpoolingDelivery(offline, directory);
+        delivery.setInitialBackoffMs(60000);
+        delivery.deliver(new Serializer(), "first", HEADERS);
+        delivery.deliver(new Serializer(), "second", HEADERS);
+        offline.awaitPayloads(1);
+        delivery.close();
+        assertEquals(2, delivery.getPendingReportCount());
+
+        ScriptedDelivery online = new ScriptedDelivery(DeliveryResult.Status.DELIVERED);
+        SpoolingDelivery restarted = new SpoolingDelivery(online, directory);
+        assertEquals(Arrays.asList("\"first\"", "\"second\""), online.awaitPayloads(2));
+        restarted.close();
+    }
+
+    @Test
+    public void testFailedReportDiscarded() throws InterruptedException {
+        ScriptedDelivery baseDelivery = new ScriptedDelivery(DeliveryResult.Status.FAILURE);
+        SpoolingDelivery delivery = new SpoolingDelivery(baseDelivery, directory);
+        delivery.deliver(new Serializer(), "first", HEADERS);
+        delivery.deliver(new Serializer(), "second", HEADERS);
+
+        assertEquals(Arrays.asList("\"first\"", "\"second\""), baseDelivery.awaitPayloads(2));
+        delivery.close();
+        assertEquals(0, delivery.getPendingReportCount());
+    }
+
+    @Test
+    public void testOldestSegmentDroppedWhenFull() throws InterruptedException {
+        ScriptedDelivery offline = new ScriptedDelivery(DeliveryResult.Status.UNDELIVERED);
+        SpoolingDelivery delivery = new SpoolingDelivery(offline, directory);
+        delivery.setInitialBackoffMs(60000);
+        delivery.setSegmentBytes(64);
+        delivery.setMaxSpoolBytes(128);
+        for (int k = 0; k < 3; k++) {
+            delivery.deliver(new Serializer(), "report-" + k, HEADERS);
+        }
+        delivery.close();
+
+        assertEquals(1, delivery.getDroppedReportCount());
+        assertEquals(2, delivery.getPendingReportCount());
+        assertTrue(directory.list().length <= 2);
+    }
+}
@@ -0,0 +1,174 @@
+package com.bugsnag.delivery;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.bugsnag.serialization.Serializer;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+public class SyncHttpDeliveryTest {
+
+    private static final Map<String, String> HEADERS = Collections.emptyMap();
+    private static final Map<String, String> PAYLOAD = Collections.singletonMap("foo", "bar");
+
+    private HttpServer server;
+    private SyncHttpDelivery delivery;
+    private String contentEncoding;
+    private String contentType;
+    private String path;
+    private byte[] body;
+    private int responseCode = 200;
+    private volatile long responseDelay;
+
+    /**
+     * Starts a local server which records the last request it received
+     *
+     * @throws IOException if the server could not be started
+     */
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                contentEncoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+                contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+                path = exchange.getRequestURI().getPath();
+                body = readFully(exchange.getRequestBody());
+                try {
+                    Thread.sleep(responseDelay);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                exchange.sendResponseHeaders(responseCode, -1);
+                exchange.close();
+            }
+        });
+        server.start();
+        delivery = new SyncHttpDelivery("http://127.0.0.1:" + server.getAddress().getPort());
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testUncompressed() {
+        delivery.deliver(new Serializer(), PAYLOAD, HEADERS);
+        assertNull(contentEncoding);
+        assertEquals("{\"foo\":\"bar\"}", new String(body));
+    }
+
+    @Test
+    public void testContentType() {
+        delivery.deliver(new Serializer(), PAYLOAD, HEADERS);
+        assertEquals("application/json", contentType);
+
+        delivery.deliver(new Serializer(new JsonFactory(), "application/x-test"), PAYLOAD, HEADERS);
+        assertEquals("application/x-test", contentType);
+    }
+
+    @Test
+    public void testEndpointChanged() {
+        delivery.deliver(new Serializer(), PAYLOAD, HEADERS);
+        delivery.setEndpoint("http://127.0.0.1:" + server.getAddress().getPort() + "/other");
+
+        // the URL parsed for the first endpoint is not reused
+        DeliveryResult result = delivery.deliverWithResult(new Serializer(), PAYLOAD, HEADERS);
+        assertEquals(DeliveryResult.Status.DELIVERED, result.getStatus());
+        assertEquals("/other", path);
+    }
+
+    @Test
+    public void testGzip() throws IOException {
+        delivery.setCompression(Compression.GZIP);
+        delivery.deliver(new Serializer(), PAYLOAD, HEADERS);
+        assertEquals("gzip", contentEncoding);
+        byte[] json = readFully(new GZIPInputStream(new ByteArrayInputStream(body)));
+        assertEquals("{\"foo\":\"bar\"}", new String(json));
+    }
+
+    @Test
+    public void testDeflate() throws IOException {
+        delivery.setCompression(Compression.DEFLATE);
+        delivery.deliver(new Serializer(), PAYLOAD, HEADERS);
+        assertEquals("deflate", contentEncoding);
+        byte[] json = readFully(new InflaterInputStream(new ByteArrayInputStream(body)));
+        assertEquals("{\"foo\":\"bar\"}", new String(json));
+    }
+
+    @Test
+    public void testDeliveryResult() {
+        Serializer serializer = new Serializer();
+        assertEquals(DeliveryResult.Status.DELIVERED,
+                delivery.deliverWithResult(serializer, PAYLOAD, HEADERS).getStatus());
+
+        responseCode = 503;
+        DeliveryResult result = delivery.deliverWithResult(serializer, PAYLOAD, HEADERS);
+        assertEquals(DeliveryResult.Status.UNDELIVERED, result.getStatus());
+        assertEquals(503, result.getResponseCode());
+
+        responseCode = 400;
+        assertEquals(DeliveryResult.Status.FAILURE,
+                delivery.deliverWithResult(serializer, PAYLOAD, HEADERS).getStatus());
+    }
+
+    @Test
+    public void testReadTimeout() {
+        responseDelay = 1000;
+        delivery.setReadTimeout(50);
+        DeliveryResult result = delivery.deliverWithResult(new Serializer(), PAYLOAD, HEADERS);
+        assertEquals(DeliveryResult.Status.UNDELIVERED, result.getStatus());
+        assertEquals(0, delivery.getAbortedRequestCount());
+    }
+
+    @Test
+    public void testDeadlineAbortsRequest() {
+        responseDelay = 1000;
+        delivery.setReadTimeout(0);
+        delivery.setDeadline(50);
+        long start = System.currentTimeMillis();
+        DeliveryResult result = delivery.deliverWithResult(new Serializer(), PAYLOAD, HEADERS);
+        assertEquals(DeliveryResult.Status.UNDELIVERED, result.getStatus());
+        assertEquals(1, delivery.getAbortedRequestCount());
+        assertTrue(System.currentTimeMillis() - start < 1000);
+    }
+
+    @Test
+    public void testParseRetryAfter() {
+        assertEquals(0, SyncHttpDelivery.parseRetryAfter(null));
+        assertEquals(0, SyncHttpDelivery.parseRetryAfter("soon"));
+        assertEquals(120000, SyncHttpDelivery.parseRetryAfter("120"));
+        assertEquals(0, SyncHttpDelivery.parseRetryAfter("Wed, 21 Oct 2015 07:28:00 GMT"));
+    }
+
+    private static byte[] readFully(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        byte[] buffer = new byte[512];
+        int count;
+        while ((count = inputStream.read(buffer)) != -1) {
+            outputStream.write(buffer, 0, count);
+        }
+        inputStream.close();
+        return outputStream.toByteArray();
+    }
+}
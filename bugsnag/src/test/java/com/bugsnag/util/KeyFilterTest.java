@@ -0,0 +1,81 @@
+package com.bugsnag.util;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+public class KeyFilterTest {
+
+    @Test
+    public void testMatchesSubstrings() {
+        KeyFilter filter = new KeyFilter(Arrays.asList("password", "secret", "Cookie"));
+        assertTrue(filter.matches("password"));
+        assertTrue(filter.matches("user_password_hash"));
+        assertTrue(filter.matches("Set-Cookie"));
+        assertTrue(filter.matches("clientsecret"));
+        assertFalse(filter.matches("pass"));
+        assertFalse(filter.matches("cookie"));
+        assertFalse(filter.matches(""));
+        assertFalse(filter.matches(null));
+    }
+
+    @Test
+    public void testOverlappingFilters() {
+        KeyFilter filter = new KeyFilter(Arrays.asList("abcd", "bc", "cde"));
+        assertTrue(filter.matches("xbcx"));
+        assertTrue(filter.matches("abce"));
+        assertTrue(filter.matches("abcde"));
+        assertFalse(filter.matches("abxcd"));
+
+        filter = new KeyFilter(Arrays.asList("aab", "ab"));
+        assertTrue(filter.matches("aaab"));
+        assertFalse(filter.matches("aaaa"));
+    }
+
+    @Test
+    public void testMatchesSameAsContains() {
+        String[] filters = {"he", "she", "his", "hers", "ushe"};
+        String[] keys = {"ushers", "hishe", "sh", "hhhe", "usher", "uhis", "hs", "xyz", "shs"};
+        KeyFilter filter = new KeyFilter(Arrays.asList(filters));
+        for (String key : keys) {
+            boolean expected = false;
+            for (String value : filters) {
+                expected |= key.contains(value);
+            }
+            assertTrue(key, filter.matches(key) == expected);
+        }
+    }
+
+    @Test
+    public void testEmptyFilters() {
+        assertFalse(new KeyFilter(Collections.<String>emptyList()).matches("password"));
+        assertFalse(new KeyFilter(null).matches("password"));
+        assertFalse(new KeyFilter(Arrays.asList((String) null)).matches("password"));
+        assertTrue(new KeyFilter(Collections.singletonList("")).matches("anything"));
+    }
+
+    @Test
+    public void testRegexFilters() {
+        KeyFilter filter = KeyFilter.compile("secret", "regex:(?i)api[-_]?key");
+        assertTrue(filter.matches("secret"));
+        assertTrue(filter.matches("X-API-Key"));
+        assertTrue(filter.matches("my_apikey"));
+        assertFalse(filter.matches("apiVersion"));
+    }
+
+    @Test
+    public void testGlobFilters() {
+        KeyFilter filter = KeyFilter.compile("glob:*.token", "glob:pin?");
+        assertTrue(filter.matches("session.token"));
+        assertTrue(filter.matches(".token"));
+        assertTrue(filter.matches("pin1"));
+        assertFalse(filter.matches("sessiontoken"));
+        assertFalse(filter.matches("session.tokens"));
+        assertFalse(filter.matches("pin"));
+        assertFalse(filter.matches("pin12"));
+    }
+}
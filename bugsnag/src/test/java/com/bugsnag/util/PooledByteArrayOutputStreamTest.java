@@ -0,0 +1,45 @@
+package com.bugsnag.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+import org.junit.Test;
+
+public class PooledByteArrayOutputStreamTest {
+
+    @Test
+    public void testReleasedStreamIsReused() {
+        PooledByteArrayOutputStream stream = PooledByteArrayOutputStream.acquire();
+        stream.write(1);
+        assertArrayEquals(new byte[]{1}, stream.toByteArray());
+        stream.release();
+
+        // the released stream is reset, and handed to the next caller
+        PooledByteArrayOutputStream next = acquireSame(stream);
+        assertEquals(0, next.size());
+        next.release();
+    }
+
+    @Test
+    public void testLargeStreamIsDiscarded() {
+        PooledByteArrayOutputStream stream = PooledByteArrayOutputStream.acquire();
+        stream.write(new byte[2 * 1024 * 1024], 0, 2 * 1024 * 1024);
+        stream.release();
+
+        for (int index = 0; index < 32; index++) {
+            assertNotSame(stream, PooledByteArrayOutputStream.acquire());
+        }
+    }
+
+    // other tests may have released streams to the shared pool, so drain it until found
+    private static PooledByteArrayOutputStream acquireSame(PooledByteArrayOutputStream stream) {
+        for (int index = 0; index < 32; index++) {
+            PooledByteArrayOutputStream next = PooledByteArrayOutputStream.acquire();
+            if (next == stream) {
+                return next;
+            }
+        }
+        throw new AssertionError("Released stream was not reused");
+    }
+}
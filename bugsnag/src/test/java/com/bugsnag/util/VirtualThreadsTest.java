@@ -0,0 +1,42 @@
+package com.bugsnag.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeFalse;
+import static org.junit.Assume.assumeTrue;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class VirtualThreadsTest {
+
+    @Test
+    public void testNewThread() throws InterruptedException {
+        assumeTrue(VirtualThreads.isSupported());
+
+        final CountDownLatch ran = new CountDownLatch(1);
+        Thread thread = VirtualThreads.newThread(new Runnable() {
+            @Override
+            public void run() {
+                ran.countDown();
+            }
+        });
+        assertEquals(Thread.State.NEW, thread.getState());
+        assertTrue(thread.isDaemon());
+
+        thread.start();
+        assertTrue(ran.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testUnsupported() {
+        assumeFalse(VirtualThreads.isSupported());
+        VirtualThreads.newThread(new Runnable() {
+            @Override
+            public void run() {
+            }
+        });
+    }
+}